@@ -0,0 +1,90 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Customer;
+import com.ecommerce.orders.Order;
+import com.ecommerce.orders.SalesAnalytics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a sales dashboard read from {@code SalesAnalytics}
+ * against computing the same figures by scanning order history, and
+ * checkout with the analytics kept up to date.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalyticsBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private static final int PRODUCTS = 1000;
+
+    private Customer customer;
+    private int next;
+
+    @Setup
+    public void setup(){
+        Fixtures.registerProducts(PRODUCTS);
+        customer = new Customer("shopper", "Shopper");
+        Customer.registerCustomer(customer);
+        for (int i = 0; i < size; i++){
+            customer.addToCart(1 + i % PRODUCTS);
+            customer.addToCart(1 + (i * 7) % PRODUCTS, 2);
+            customer.placeOrder();
+        }
+    }
+
+    @Benchmark
+    public List<SalesAnalytics.ProductRevenue> readDashboard(){
+        SalesAnalytics sales = Order.getSalesAnalytics();
+        sales.getRevenue();
+        sales.getOrderCount(Order.Status.PENDING);
+        return sales.getTopProducts(10);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Map<Integer, Long> scanDashboard(){
+        long revenue = 0;
+        long pending = 0;
+        Map<Integer, Long> byProduct = new HashMap<>();
+        for (Order order : Order.getOrderHistory()){
+            if (order.getOrderStatus() == Order.Status.PENDING) pending++;
+            if (order.getOrderStatus() == Order.Status.CANCELLED) continue;
+            revenue += order.getTotal();
+            for (int line = 0; line < order.getLineCount(); line++){
+                byProduct.merge(order.getProductID(line), order.getLinePrice(line), Long::sum);
+            }
+        }
+        byProduct.put(0, revenue + pending);
+        return byProduct;
+    }
+
+    @Benchmark
+    public Order placeOrder(){
+        next = next == PRODUCTS ? 1 : next + 1;
+        customer.addToCart(next);
+        return customer.placeOrder();
+    }
+}
@@ -0,0 +1,36 @@
+package com.ecommerce.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of the benchmark jar.
+ * Runs JMH with results written as JSON to {@code jmh-result.json},
+ * so runs can be compared across changes. Passing {@code -rf} or
+ * {@code -rff} overrides the defaults; any other JMH option is
+ * passed through.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain(){
+    }
+
+    /**
+     * Runs the benchmarks.
+     * @param args JMH command line options.
+     * @throws Exception if JMH fails.
+     */
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")){
+            options.addAll(List.of("-rf", "json"));
+        }
+        if (!options.contains("-rff")){
+            options.addAll(List.of("-rff", "jmh-result.json"));
+        }
+        org.openjdk.jmh.Main.main(options.toArray(String[]::new));
+    }
+}
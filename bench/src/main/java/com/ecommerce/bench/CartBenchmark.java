@@ -0,0 +1,62 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@code Customer.addToCart} and
+ * {@code Customer.calculateTotal} over catalogs of growing size.
+ * The cart holds up to 1000 distinct products.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    private Customer customer;
+    private int cartSize;
+    private int next;
+
+    @Setup
+    public void setup(){
+        Fixtures.silenceConsole();
+        Fixtures.registerProducts(size);
+        customer = new Customer("shopper", "Shopper");
+        Customer.registerCustomer(customer);
+        cartSize = Math.min(size, 1000);
+        for (int ID = 1; ID <= cartSize; ID++){
+            customer.addToCart(ID);
+        }
+    }
+
+    @Benchmark
+    public boolean addToCart(){
+        next = next == cartSize ? 1 : next + 1;
+        return customer.addToCart(next);
+    }
+
+    @Benchmark
+    public long calculateTotal(){
+        return customer.calculateTotal();
+    }
+}
@@ -0,0 +1,72 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Product;
+import com.ecommerce.orders.CartStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks adding to carts in a {@code CartStore} holding 100,000
+ * carts in memory, visiting customers in turn. With fewer customers
+ * than that every cart stays cached; with a million, every visit reads
+ * a cart back from the file and spills the least recently used one.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartStoreBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int customers;
+
+    private static final int PRODUCTS = 1000;
+    private static final int CAPACITY = 100_000;
+
+    private CartStore carts;
+    private Product[] products;
+    private int next;
+
+    @Setup
+    public void setup(){
+        Fixtures.registerProducts(PRODUCTS);
+        products = new Product[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++){
+            products[i] = Product.getProduct(i + 1);
+        }
+        carts = new CartStore(CAPACITY);
+        for (int ID = 1; ID <= customers; ID++){
+            addTo(ID);
+        }
+    }
+
+    @Benchmark
+    public int addToCart(){
+        next = next == customers ? 1 : next + 1;
+        return addTo(next);
+    }
+
+    private int addTo(int customerID){
+        Product product = products[customerID % PRODUCTS];
+        return carts.apply(customerID, cart -> {
+            if (cart.size() >= 4) cart.clear();
+            cart.add(product, 1);
+            return cart.size();
+        });
+    }
+}
@@ -0,0 +1,51 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks catalog access: {@code Product.getProducts} and lookup
+ * of a product by ID.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    @Setup
+    public void setup(){
+        Fixtures.registerProducts(size);
+    }
+
+    @Benchmark
+    public Collection<Product> getProducts(){
+        return Product.getProducts();
+    }
+
+    @Benchmark
+    public Product getProduct(){
+        return Product.getProduct(ThreadLocalRandom.current().nextInt(1, size + 1));
+    }
+}
@@ -0,0 +1,72 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Product;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Measures the heap held by the product catalog, which JMH cannot do
+ * since registries live for the whole process. Run in a fresh JVM:
+ * <pre>
+ * java -cp benchmarks.jar com.ecommerce.bench.CatalogFootprint PRODUCTS
+ * </pre>
+ * It registers PRODUCTS products, named like the products of
+ * {@link SearchBenchmark}, and prints one JSON line with the heap
+ * still in use after a full collection, per product and in total,
+ * the bytes allocated while loading and the time spent collecting.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class CatalogFootprint {
+
+    private CatalogFootprint(){
+    }
+
+    /**
+     * Runs the measurement.
+     * @param args {@code PRODUCTS}
+     */
+    public static void main(String[] args){
+        if (args.length != 1){
+            System.err.println("usage: PRODUCTS");
+            System.exit(2);
+        }
+        int count = Integer.parseInt(args[0]);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = usedAfterGc(memory);
+        long gcMillis = gcMillis();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 1; i <= count; i++){
+            Product.addProduct(new Product(SearchBenchmark.name(i), 1 + (i % 10_000) * 0.01));
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+        gcMillis = gcMillis() - gcMillis;
+        long used = usedAfterGc(memory) - before;
+        System.out.printf("{\"products\":%d,\"heapBytes\":%d,\"bytesPerProduct\":%d,"
+                        + "\"allocatedBytes\":%d,\"loadMillis\":%d,\"gcMillis\":%d}%n",
+                Product.getProducts().size(), used, used / Math.max(count, 1), allocated,
+                millis, gcMillis);
+    }
+
+    private static long usedAfterGc(MemoryMXBean memory){
+        for (int i = 0; i < 3; i++){
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcMillis(){
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()){
+            millis += Math.max(collector.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+}
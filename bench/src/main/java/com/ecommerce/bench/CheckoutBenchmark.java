@@ -0,0 +1,76 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Customer;
+import com.ecommerce.orders.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@code Customer.placeOrder} for a three line cart, with
+ * the catalog and customer base at the given size, with and without
+ * an idempotency key, and a retried checkout given its order back.
+ * Each invocation but the retry refills the cart before checking out.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckoutBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    private Customer customer;
+    private long keys;
+
+    @Setup
+    public void setup(){
+        Fixtures.silenceConsole();
+        Fixtures.registerProducts(size);
+        Fixtures.registerCustomers(size);
+        customer = Customer.getCustomer("user" + size);
+        customer.setAddress("1 Benchmark Way");
+        customer.addToCart(1);
+        customer.placeOrder("retried");
+    }
+
+    @Benchmark
+    public long placeOrder(){
+        customer.addToCart(1);
+        customer.addToCart(1 + size / 2, 2);
+        customer.addToCart(size);
+        long total = customer.calculateTotal();
+        customer.placeOrder();
+        return total;
+    }
+
+    @Benchmark
+    public long placeOrderWithKey(){
+        customer.addToCart(1);
+        customer.addToCart(1 + size / 2, 2);
+        customer.addToCart(size);
+        long total = customer.calculateTotal();
+        customer.placeOrder(Long.toString(keys++));
+        return total;
+    }
+
+    @Benchmark
+    public Order retry(){
+        return customer.placeOrder("retried");
+    }
+}
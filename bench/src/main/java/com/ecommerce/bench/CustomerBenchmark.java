@@ -0,0 +1,59 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@code Customer.getCustomer} by username, as done on
+ * every signup and login.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    /*
+     * Usernames looked up, cycled through by the benchmark.
+     */
+    private String[] usernames;
+    private int next;
+
+    @Setup
+    public void setup(){
+        Fixtures.registerCustomers(size);
+        usernames = new String[1024];
+        for (int i = 0; i < usernames.length; i++){
+            usernames[i] = "user" + (1 + (i * 7919L) % size);
+        }
+    }
+
+    @Benchmark
+    public Customer getCustomer(){
+        return Customer.getCustomer(usernames[next++ & (usernames.length - 1)]);
+    }
+
+    @Benchmark
+    public Customer getCustomerMissing(){
+        return Customer.getCustomer("nobody");
+    }
+}
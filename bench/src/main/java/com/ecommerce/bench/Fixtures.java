@@ -0,0 +1,48 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Customer;
+import com.ecommerce.Product;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Populates the static registries for benchmarks.
+ * Registries are process-wide, so every parameter combination runs in
+ * its own fork and fills them once at trial setup.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+final class Fixtures {
+
+    private Fixtures(){
+    }
+
+    /**
+     * Discards console output, so benchmarks of methods that print
+     * measure the work rather than the terminal.
+     */
+    static void silenceConsole(){
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    /**
+     * Registers products with IDs 1 to count.
+     * @param count int: number of products.
+     */
+    static void registerProducts(int count){
+        for (int i = 1; i <= count; i++){
+            Product.addProduct(new Product("Product " + i, 1 + (i % 1000) * 0.01));
+        }
+    }
+
+    /**
+     * Registers customers named {@code user1} to {@code user<count>}.
+     * @param count int: number of customers.
+     */
+    static void registerCustomers(int count){
+        for (int i = 1; i <= count; i++){
+            Customer.registerCustomer(new Customer("user" + i, "Customer " + i));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Persistence;
+import com.ecommerce.Product;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measures bulk import of a product feed, which JMH cannot do since
+ * the catalog lives for the whole process. Each step runs in a fresh
+ * JVM:
+ * <pre>
+ * java -cp benchmarks.jar com.ecommerce.bench.ImportTimer generate FILE PRODUCTS
+ * java -cp benchmarks.jar com.ecommerce.bench.ImportTimer load FILE [DIR]
+ * </pre>
+ * {@code generate} writes a CSV feed of PRODUCTS products named like
+ * those of {@link SearchBenchmark}. {@code load} imports it, journaling
+ * the products to the store in DIR if given, and prints one JSON line
+ * with the products and bytes loaded, the time taken and the
+ * throughput in MB/s.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class ImportTimer {
+
+    private ImportTimer(){
+    }
+
+    /**
+     * Runs a step.
+     * @param args {@code generate FILE PRODUCTS} or {@code load FILE [DIR]}.
+     * @throws IOException if the feed or the store fails.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("generate")){
+            generate(Path.of(args[1]), Integer.parseInt(args[2]));
+        }
+        else if ((args.length == 2 || args.length == 3) && args[0].equals("load")){
+            load(Path.of(args[1]), args.length == 3 ? Path.of(args[2]) : null);
+        }
+        else {
+            System.err.println("usage: generate FILE PRODUCTS | load FILE [DIR]");
+            System.exit(2);
+        }
+    }
+
+    private static void generate(Path file, int count) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)){
+            out.write("name,price,stock\n");
+            for (int i = 1; i <= count; i++){
+                out.write(SearchBenchmark.name(i));
+                out.write(',');
+                out.write(Integer.toString(1 + (i % 10_000) / 100));
+                out.write('.');
+                out.write(Integer.toString(10 + i % 90));
+                out.write(',');
+                if (i % 10 != 0) out.write(Integer.toString(i % 500));
+                out.write('\n');
+            }
+        }
+    }
+
+    private static void load(Path file, Path directory) throws IOException {
+        if (directory != null) Persistence.open(directory);
+        long bytes = Files.size(file);
+        long start = System.nanoTime();
+        int count = Product.importProducts(file);
+        long nanos = System.nanoTime() - start;
+        if (directory != null) Persistence.close();
+        System.out.printf("{\"products\":%d,\"bytes\":%d,\"millis\":%d,\"mbPerSecond\":%.1f}%n",
+                count, bytes, nanos / 1_000_000, bytes / 1e6 / (nanos / 1e9));
+    }
+}
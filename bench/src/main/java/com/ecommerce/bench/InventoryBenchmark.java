@@ -0,0 +1,67 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures stock reservation under flash-sale contention: every
+ * thread reserves and returns one unit, either all on one product
+ * ({@code products = 1}) or spread over many. {@code soldOut} measures
+ * buyers turned away once the hot product has none left. Run with
+ * {@code -t} to see how throughput scales with buyers.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(16)
+@Fork(1)
+public class InventoryBenchmark {
+
+    @Param({"1", "1000"})
+    public int products;
+
+    private Product[] stocked;
+    private Product soldOut;
+
+    @Setup
+    public void setup(){
+        stocked = new Product[products];
+        for (int i = 0; i < products; i++){
+            stocked[i] = new Product("Stocked " + i, 1, Integer.MAX_VALUE / 2);
+            Product.addProduct(stocked[i]);
+        }
+        soldOut = new Product("Sold out", 1, 0);
+        Product.addProduct(soldOut);
+    }
+
+    @Benchmark
+    public boolean reserveAndRelease(){
+        Product product = stocked[ThreadLocalRandom.current().nextInt(products)];
+        boolean reserved = product.reserve(1);
+        if (reserved) product.release(1);
+        return reserved;
+    }
+
+    @Benchmark
+    public boolean soldOut(){
+        return soldOut.reserve(1);
+    }
+}
@@ -0,0 +1,75 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Customer;
+import com.ecommerce.Persistence;
+import com.ecommerce.Product;
+import com.ecommerce.orders.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures durable order throughput with persistence open:
+ * every {@code Order.addOrderToHistory} returns only once its record
+ * is fsynced. Run with {@code -t} to vary the number of concurrent
+ * checkouts sharing each group commit.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class JournalBenchmark {
+
+    private Path directory;
+    private Customer customer;
+    private Product product;
+
+    @Setup
+    public void setup() throws IOException {
+        Fixtures.registerProducts(10);
+        product = Product.getProduct(1);
+        customer = new Customer("shopper", "Shopper");
+        Customer.registerCustomer(customer);
+        directory = Files.createTempDirectory("store");
+        Persistence.open(directory);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Persistence.close();
+        try (Stream<Path> files = Files.walk(directory)){
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()){
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public Order addDurableOrder(){
+        Order order = new Order(customer, List.of(), product.getPrice());
+        Order.addOrderToHistory(order);
+        return order;
+    }
+}
@@ -0,0 +1,145 @@
+package com.ecommerce.bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives a running storefront API with many concurrent sessions, which
+ * JMH cannot do since the server runs in another process:
+ * <pre>
+ * java -cp benchmarks.jar com.ecommerce.bench.LoadGenerator URL SESSIONS REQUESTS
+ * </pre>
+ * Each session runs on a virtual thread, signs up and logs in a fresh
+ * customer and then repeats browse, add to cart and checkout until it
+ * has sent REQUESTS requests. Prints one JSON line with throughput,
+ * latency percentiles in microseconds, the count of requests the
+ * server refused (4xx, such as checkouts of sold out products) and the
+ * count that failed.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class LoadGenerator {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final String TOKEN = "\"token\":\"";
+
+    private final URI base;
+    private final HttpClient client;
+    private final AtomicInteger rejected = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+
+    private LoadGenerator(URI base, HttpClient client){
+        this.base = base;
+        this.client = client;
+    }
+
+    /**
+     * Runs the load.
+     * @param args {@code URL SESSIONS REQUESTS}
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length != 3){
+            System.err.println("usage: URL SESSIONS REQUESTS");
+            System.exit(2);
+        }
+        URI base = URI.create(args[0].endsWith("/") ? args[0] : args[0] + "/");
+        int sessions = Integer.parseInt(args[1]);
+        int requests = Integer.parseInt(args[2]);
+        long[][] latencies = new long[sessions][];
+        String run = Long.toString(System.currentTimeMillis(), 36);
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder()
+                     .executor(threads).connectTimeout(TIMEOUT).build()){
+            LoadGenerator generator = new LoadGenerator(base, client);
+            long start = System.nanoTime();
+            try (ExecutorService sessionThreads = Executors.newVirtualThreadPerTaskExecutor()){
+                for (int i = 0; i < sessions; i++){
+                    int session = i;
+                    sessionThreads.submit(() -> {
+                        latencies[session] = generator.session("load" + run + "_" + session, requests);
+                    });
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+            System.out.printf("{\"sessions\":%d,\"requests\":%d,\"rejected\":%d,\"errors\":%d,"
+                            + "\"seconds\":%.3f,\"requestsPerSecond\":%.1f,"
+                            + "\"p50Micros\":%d,\"p99Micros\":%d,\"p999Micros\":%d}%n",
+                    sessions, all.length, generator.rejected.get(), generator.errors.get(), elapsed / 1e9,
+                    all.length / (elapsed / 1e9),
+                    percentile(all, 0.5), percentile(all, 0.99), percentile(all, 0.999));
+        }
+    }
+
+    /*
+     * Runs one session and returns the latency of each request
+     * in nanoseconds.
+     */
+    private long[] session(String username, int requests){
+        long[] latencies = new long[requests];
+        String[] token = {""};
+        int sent = 0;
+        sent = send("POST", "signup", token,
+                "{\"username\":\"" + username + "\",\"name\":\"Load " + username + "\"}", latencies, sent);
+        sent = send("POST", "login", token, "{\"username\":\"" + username + "\"}", latencies, sent);
+        while (sent < requests){
+            sent = send("GET", "products?limit=20", token, null, latencies, sent);
+            sent = send("POST", "cart/add", token,
+                    "{\"productID\":" + (1 + sent % 7) + ",\"quantity\":1}", latencies, sent);
+            sent = send("POST", "checkout", token,
+                    "{\"address\":\"1 Load Street\"}", latencies, sent);
+        }
+        return latencies;
+    }
+
+    /*
+     * Sends one request with the session token, and keeps the
+     * token if the response carries a new one.
+     */
+    private int send(String method, String path, String[] token, String body,
+                     long[] latencies, int sent){
+        if (sent >= latencies.length) return sent;
+        HttpRequest request = HttpRequest.newBuilder(base.resolve(path))
+                .timeout(TIMEOUT)
+                .header("Authorization", "Bearer " + token[0])
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            latencies[sent] = System.nanoTime() - start;
+            if (response.statusCode() >= 500) errors.incrementAndGet();
+            else if (response.statusCode() >= 400) rejected.incrementAndGet();
+            int at = response.body().indexOf(TOKEN);
+            if (at >= 0){
+                at += TOKEN.length();
+                token[0] = response.body().substring(at, response.body().indexOf('"', at));
+            }
+        } catch (IOException e){
+            latencies[sent] = System.nanoTime() - start;
+            errors.incrementAndGet();
+        } catch (InterruptedException e){
+            latencies[sent] = System.nanoTime() - start;
+            Thread.currentThread().interrupt();
+            errors.incrementAndGet();
+        }
+        return sent + 1;
+    }
+
+    private static long percentile(long[] sorted, double p){
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1000;
+    }
+}
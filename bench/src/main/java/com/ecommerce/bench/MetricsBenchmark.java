@@ -0,0 +1,73 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Customer;
+import com.ecommerce.metrics.Metrics;
+import com.ecommerce.orders.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the instrumented customer operations with metrics
+ * recording and with it turned off, to bound the cost of the timers
+ * on the hot path.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    @Param({"true", "false"})
+    public boolean metrics;
+
+    private static final int PRODUCTS = 1000;
+
+    private Customer customer;
+    private String[] usernames;
+    private int next;
+
+    @Setup
+    public void setup(){
+        Fixtures.registerProducts(PRODUCTS);
+        Fixtures.registerCustomers(100_000);
+        customer = Customer.getCustomer("user1");
+        usernames = new String[1024];
+        for (int i = 0; i < usernames.length; i++){
+            usernames[i] = "user" + (1 + (i * 7919L) % 100_000);
+        }
+        Metrics.setEnabled(metrics);
+    }
+
+    @Benchmark
+    public Customer getCustomer(){
+        return Customer.getCustomer(usernames[next++ & (usernames.length - 1)]);
+    }
+
+    @Benchmark
+    public boolean addToCart(){
+        next = next == PRODUCTS ? 1 : next + 1;
+        return customer.addToCart(next);
+    }
+
+    @Benchmark
+    public Order placeOrder(){
+        next = next == PRODUCTS ? 1 : next + 1;
+        customer.addToCart(next);
+        return customer.placeOrder();
+    }
+}
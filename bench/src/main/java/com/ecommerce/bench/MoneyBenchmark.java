@@ -0,0 +1,71 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cart total kept as a running {@code long} in cents
+ * against the former path: summing {@code double} item prices through
+ * a stream on every call. Run with {@code -prof gc} to see the
+ * allocation difference.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    @Param({"3", "30", "300"})
+    public int lines;
+
+    /*
+     * Item prices as the cart used to store them.
+     */
+    private final List<LegacyItem> legacyCart = new ArrayList<>();
+    private Customer customer;
+
+    @Setup
+    public void setup(){
+        Fixtures.registerProducts(lines);
+        customer = new Customer("shopper", "Shopper");
+        for (int ID = 1; ID <= lines; ID++){
+            customer.addToCart(ID);
+            legacyCart.add(new LegacyItem(1 + (ID % 1000) * 0.01));
+        }
+    }
+
+    @Benchmark
+    public double legacyDoubleStreamTotal(){
+        return legacyCart.stream().mapToDouble(LegacyItem::price).sum();
+    }
+
+    @Benchmark
+    public long runningCentsTotal(){
+        return customer.calculateTotal();
+    }
+
+    /**
+     * A cart line priced in {@code double}, as before.
+     * @param price double: price in dollars.
+     */
+    record LegacyItem(double price) {
+    }
+}
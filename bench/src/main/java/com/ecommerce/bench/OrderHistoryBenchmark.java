@@ -0,0 +1,69 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Customer;
+import com.ecommerce.orders.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@code Order.getOrderHistory}, a full pass over it as
+ * the admin listing does, and lookup of one order by ID.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderHistoryBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    @Setup
+    public void setup(){
+        Fixtures.silenceConsole();
+        Fixtures.registerProducts(10);
+        Customer customer = new Customer("shopper", "Shopper");
+        Customer.registerCustomer(customer);
+        for (int i = 0; i < size; i++){
+            customer.addToCart(1 + i % 10);
+            customer.placeOrder();
+        }
+    }
+
+    @Benchmark
+    public Collection<Order> getOrderHistory(){
+        return Order.getOrderHistory();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long scanOrderHistory(){
+        long total = 0;
+        for (Order order : Order.getOrderHistory()){
+            total += order.getTotal();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Order getOrder(){
+        return Order.getOrder(ThreadLocalRandom.current().nextInt(1, size + 1));
+    }
+}
@@ -0,0 +1,91 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Customer;
+import com.ecommerce.Persistence;
+import com.ecommerce.orders.Order;
+import com.ecommerce.orders.OrderPipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Compares durable checkout throughput placing each order inline
+ * against queueing it on an {@link OrderPipeline} and waiting for the
+ * batch it lands in. Each thread checks out its own customer's one
+ * line cart. Run with {@code -t} to vary the number of buyers.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class PipelineBenchmark {
+
+    private final AtomicInteger shoppers = new AtomicInteger();
+    private Path directory;
+    private OrderPipeline pipeline;
+
+    @State(Scope.Thread)
+    public static class Shopper {
+        Customer customer;
+
+        @Setup
+        public void setup(PipelineBenchmark benchmark){
+            int i = benchmark.shoppers.incrementAndGet();
+            customer = new Customer("shopper" + i, "Shopper " + i);
+            Customer.registerCustomer(customer);
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        Fixtures.registerProducts(10);
+        directory = Files.createTempDirectory("store");
+        Persistence.open(directory);
+        pipeline = new OrderPipeline();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pipeline.close();
+        Persistence.close();
+        try (Stream<Path> files = Files.walk(directory)){
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()){
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public Order placeOrder(Shopper shopper){
+        shopper.customer.addToCart(1);
+        return shopper.customer.placeOrder();
+    }
+
+    @Benchmark
+    public Order placeOrderPipelined(Shopper shopper) throws InterruptedException {
+        shopper.customer.addToCart(1);
+        return shopper.customer.placeOrder(pipeline).join();
+    }
+}
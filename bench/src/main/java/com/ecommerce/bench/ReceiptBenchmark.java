@@ -0,0 +1,98 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Customer;
+import com.ecommerce.Money;
+import com.ecommerce.orders.Order;
+import com.ecommerce.render.ReceiptWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares rendering a three line order receipt with
+ * {@link ReceiptWriter} against the former {@code orderSummary}: a new
+ * {@code SimpleDateFormat} and one {@code printf} per line. Output is
+ * discarded. Run with {@code -prof gc} to see the allocation per
+ * receipt.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReceiptBenchmark {
+
+    private final PrintStream console = new PrintStream(OutputStream.nullOutputStream());
+    private final WritableByteChannel channel = Channels.newChannel(OutputStream.nullOutputStream());
+    private final StringBuilder page = new StringBuilder(4096);
+    private Order order;
+
+    @Setup
+    public void setup(){
+        Fixtures.registerProducts(3);
+        Customer customer = new Customer("shopper", "Shopper");
+        Customer.registerCustomer(customer);
+        customer.addToCart(1);
+        customer.addToCart(2, 2);
+        customer.addToCart(3, 3);
+        order = customer.placeOrder();
+    }
+
+    @Benchmark
+    public PrintStream legacyPrintf(){
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+        String formattedDate = sdf.format(new Date(order.getTime()));
+        console.printf("%-7s %d%n", "OrderID:", order.getOrderID());
+        console.printf("%-7s %s%n", "Customer name:", order.getCustomer().getName());
+        console.println();
+        console.printf("%-5s %-15s %-10s %s%n", "ID", "Product", "Qty", "Price");
+        for (int line = 0; line < order.getLineCount(); line++){
+            console.printf("%-5d %-15s %-10d %s%n", order.getProductID(line),
+                    order.getProductName(line), order.getQuantity(line),
+                    Money.format(order.getLinePrice(line)));
+        }
+        console.println();
+        console.printf("%-7s %s%n", "Order Status:", order.getOrderStatus());
+        console.printf("%-10s %s%n", "Date:", formattedDate);
+        return console;
+    }
+
+    @Benchmark
+    public StringBuilder textToAppendable(){
+        page.setLength(0);
+        ReceiptWriter.forThread().write(order, ReceiptWriter.Format.TEXT, page);
+        return page;
+    }
+
+    @Benchmark
+    public WritableByteChannel textToChannel() throws IOException {
+        ReceiptWriter.forThread().write(order, ReceiptWriter.Format.TEXT, channel);
+        return channel;
+    }
+
+    @Benchmark
+    public StringBuilder jsonToAppendable(){
+        page.setLength(0);
+        ReceiptWriter.forThread().write(order, ReceiptWriter.Format.JSON, page);
+        return page;
+    }
+}
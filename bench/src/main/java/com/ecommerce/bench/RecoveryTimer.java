@@ -0,0 +1,79 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Customer;
+import com.ecommerce.Persistence;
+import com.ecommerce.Product;
+import com.ecommerce.orders.Order;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Measures cold-start recovery of the store, which JMH cannot do since
+ * registries live for the whole process. Each step runs in a fresh JVM:
+ * <pre>
+ * java -cp benchmarks.jar com.ecommerce.bench.RecoveryTimer generate DIR ORDERS TAIL
+ * java -cp benchmarks.jar com.ecommerce.bench.RecoveryTimer load DIR
+ * </pre>
+ * {@code generate} builds ORDERS orders in memory, writes them as a
+ * snapshot, then places TAIL more orders through the journal.
+ * {@code load} opens the store and prints one JSON line with the
+ * counts recovered and the time taken.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class RecoveryTimer {
+
+    private static final int PRODUCTS = 1000;
+    private static final int CUSTOMERS = 10_000;
+
+    private RecoveryTimer(){
+    }
+
+    /**
+     * Runs a step.
+     * @param args {@code generate DIR ORDERS TAIL} or {@code load DIR}.
+     * @throws IOException if the store fails.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 4 && args[0].equals("generate")){
+            generate(Path.of(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+        }
+        else if (args.length == 2 && args[0].equals("load")){
+            load(Path.of(args[1]));
+        }
+        else {
+            System.err.println("usage: generate DIR ORDERS TAIL | load DIR");
+            System.exit(2);
+        }
+    }
+
+    private static void generate(Path directory, int orders, int tail) throws IOException {
+        Fixtures.registerProducts(PRODUCTS);
+        Fixtures.registerCustomers(CUSTOMERS);
+        placeOrders(orders);
+        Persistence.open(directory);
+        Persistence.snapshot();
+        placeOrders(tail);
+        Persistence.close();
+    }
+
+    private static void placeOrders(int count){
+        for (int i = 0; i < count; i++){
+            Customer customer = Customer.getCustomer(1 + i % CUSTOMERS);
+            Product product = Product.getProduct(1 + i % PRODUCTS);
+            Order.addOrderToHistory(new Order(customer, List.of(), product.getPrice()));
+        }
+    }
+
+    private static void load(Path directory) throws IOException {
+        long start = System.nanoTime();
+        Persistence.open(directory);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("{\"products\":%d,\"customers\":%d,\"orders\":%d,\"millis\":%d}%n",
+                Product.getProducts().size(), Customer.getCustomers().size(),
+                Order.getOrderHistory().size(), millis);
+        Persistence.close();
+    }
+}
@@ -0,0 +1,84 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Customer;
+import com.ecommerce.orders.Order;
+import com.ecommerce.orders.SalesReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building the end-of-day {@code SalesReport} over a
+ * month of order history on pools of 1, 4 and 16 threads. Speedup
+ * is bounded by the cores of the machine it runs on.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReportBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"1", "4", "16"})
+    public int threads;
+
+    private static final int PRODUCTS = 10_000;
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup(){
+        Fixtures.registerProducts(PRODUCTS);
+        Customer customer = new Customer("shopper", "Shopper");
+        Customer.registerCustomer(customer);
+        SplittableRandom random = new SplittableRandom(1);
+        long start = System.currentTimeMillis() - 30 * DAY_MILLIS;
+        for (int ID = 1; ID <= size; ID++){
+            int lines = 1 + random.nextInt(4);
+            int[] productIDs = new int[lines];
+            int[] quantities = new int[lines];
+            long[] unitPrices = new long[lines];
+            long total = 0;
+            for (int line = 0; line < lines; line++){
+                productIDs[line] = 1 + random.nextInt(PRODUCTS);
+                quantities[line] = 1 + random.nextInt(3);
+                unitPrices[line] = 100 + productIDs[line] % 1000;
+                total += unitPrices[line] * quantities[line];
+            }
+            Order.restoreOrder(ID, customer, productIDs, quantities, unitPrices, total,
+                    ID % 20 == 0 ? Order.Status.CANCELLED : Order.Status.DELIVERED,
+                    start + ID * (30 * DAY_MILLIS / size));
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown(){
+        pool.close();
+    }
+
+    @Benchmark
+    public SalesReport generate(){
+        return SalesReport.generate(pool);
+    }
+}
@@ -0,0 +1,85 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks product search over a catalog of the given size, with
+ * names such as {@code "Red Cotton Shirt 17"} drawn from a small
+ * vocabulary, so common words match a large share of the catalog.
+ * Every query asks for the first 20 matches.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final String[] COLOURS = {"Red", "Blue", "Green", "Black", "White", "Grey",
+            "Navy", "Olive", "Pink", "Gold"};
+    private static final String[] MATERIALS = {"Cotton", "Leather", "Wool", "Denim", "Silk",
+            "Linen", "Canvas", "Suede"};
+    private static final String[] ITEMS = {"Shirt", "Shoes", "Jacket", "Scarf", "Hat", "Bag",
+            "Belt", "Gloves", "Socks", "Sweater", "Shorts", "Sandals"};
+    private static final int LIMIT = 20;
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    @Setup
+    public void setup(){
+        for (int i = 1; i <= size; i++){
+            Product.addProduct(new Product(name(i), 1 + (i % 10_000) * 0.01));
+        }
+    }
+
+    /*
+     * Name of the i-th synthetic product.
+     */
+    static String name(int i){
+        return COLOURS[i % COLOURS.length] + " " + MATERIALS[(i / 10) % MATERIALS.length]
+                + " " + ITEMS[(i / 80) % ITEMS.length] + " " + (i % 1000);
+    }
+
+    @Benchmark
+    public List<Product> singleWord(){
+        return Product.searchProducts("jacket", 0, Long.MAX_VALUE, LIMIT);
+    }
+
+    @Benchmark
+    public List<Product> severalWordsWithPrefix(){
+        return Product.searchProducts("navy suede sh", 0, Long.MAX_VALUE, LIMIT);
+    }
+
+    @Benchmark
+    public List<Product> wordsInPriceRange(){
+        return Product.searchProducts("wool hat", 5_000, 6_000, LIMIT);
+    }
+
+    @Benchmark
+    public List<Product> priceRange(){
+        return Product.searchProducts("", 5_000, 6_000, LIMIT);
+    }
+
+    @Benchmark
+    public List<String> autocomplete(){
+        return Product.completeProductName("s", LIMIT);
+    }
+}
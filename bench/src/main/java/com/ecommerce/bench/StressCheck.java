@@ -0,0 +1,314 @@
+package com.ecommerce.bench;
+
+import com.ecommerce.Customer;
+import com.ecommerce.Product;
+import com.ecommerce.orders.Order;
+import com.ecommerce.orders.OrderPipeline;
+import com.ecommerce.orders.SalesAnalytics;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that the lock-free paths stay consistent under contention,
+ * which the benchmarks measure but never verify. Run in a fresh JVM:
+ * <pre>
+ * java -cp benchmarks.jar com.ecommerce.bench.StressCheck THREADS COUNT
+ * </pre>
+ * From THREADS threads at once it
+ * <ul>
+ *   <li>registers COUNT customers and COUNT products, and checks
+ *       each registry handed out COUNT distinct dense IDs and holds
+ *       COUNT entries;</li>
+ *   <li>places COUNT two line orders in rounds, each against stock
+ *       too scarce for them, and checks stock never went negative
+ *       and equals the initial stock less what the placed orders
+ *       hold, so a refused order reserved none of its lines;</li>
+ *   <li>cancels and delivers the same COUNT orders, and checks each
+ *       ended in exactly one of the two, with stock, the status
+ *       index and the sales figures agreeing;</li>
+ *   <li>retries COUNT checkouts made directly and COUNT made through
+ *       an order pipeline, each under its own key, and checks each
+ *       placed one order that every retry was given.</li>
+ * </ul>
+ * It prints one JSON line per check and exits with status 1 if any
+ * check failed.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class StressCheck {
+
+    /*
+     * Units of each product in a round of the reservation check, and
+     * orders placed against them, so every round runs out of stock
+     * with all threads contending for the last units.
+     */
+    private static final int SCARCE_STOCK = 20;
+    private static final int ROUND_ORDERS = 64;
+
+    private static ExecutorService pool;
+    private static int threads;
+    private static boolean failed;
+
+    private StressCheck(){
+    }
+
+    /**
+     * Runs the checks.
+     * @param args {@code THREADS COUNT}
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2){
+            System.err.println("usage: THREADS COUNT");
+            System.exit(2);
+        }
+        threads = Integer.parseInt(args[0]);
+        int count = Integer.parseInt(args[1]);
+        pool = Executors.newFixedThreadPool(threads);
+        try {
+            registry(count);
+            reservation(count);
+            statusRace(count);
+            keyedRetry(count);
+        } finally {
+            pool.shutdownNow();
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /*
+     * Registers customers and products from all threads at once.
+     */
+    private static void registry(int count) throws Exception {
+        int firstCustomer = Customer.getCustomers().size() + 1;
+        int firstProduct = Product.getProducts().size() + 1;
+        List<Integer> customerIDs = new ArrayList<>();
+        List<Integer> productIDs = new ArrayList<>();
+        for (List<Integer> IDs : StressCheck.<List<Integer>>runAll(count, i -> {
+            Customer customer = new Customer("stress" + i, "Stress " + i);
+            if (!Customer.registerCustomer(customer)) return List.<Integer>of();
+            Product product = new Product("Stress " + i, 1);
+            Product.addProduct(product);
+            return List.of(customer.getCustomerID(), product.getProductID());
+        })){
+            if (IDs.size() == 2){
+                customerIDs.add(IDs.get(0));
+                productIDs.add(IDs.get(1));
+            }
+        }
+        report("registry",
+                customerIDs.size() == count && dense(customerIDs, firstCustomer)
+                        && Customer.getCustomers().size() == firstCustomer - 1 + count
+                        && productIDs.size() == count && dense(productIDs, firstProduct)
+                        && Product.getProducts().size() == firstProduct - 1 + count,
+                "\"customers\":" + Customer.getCustomers().size()
+                        + ",\"products\":" + Product.getProducts().size());
+    }
+
+    /*
+     * Places two line orders against stock too scarce for all of
+     * them, from all threads at once, in rounds on fresh products.
+     */
+    private static void reservation(int count) throws Exception {
+        Customer[] customers = customers("reserve", threads);
+        int placed = 0;
+        int refused = 0;
+        int wrong = 0;
+        for (int round = 0; round * ROUND_ORDERS < count; round++){
+            Product[] products = new Product[4];
+            for (int i = 0; i < products.length; i++){
+                products[i] = new Product("Scarce " + round + " " + i, 1, SCARCE_STOCK);
+                Product.addProduct(products[i]);
+            }
+            long[] ordered = new long[products.length];
+            for (Order order : runAll(Math.min(ROUND_ORDERS, count - round * ROUND_ORDERS), i -> {
+                Customer customer = customers[(int) (Thread.currentThread().threadId() % threads)];
+                synchronized (customer){
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    int first = random.nextInt(products.length);
+                    int second = (first + 1 + random.nextInt(products.length - 1)) % products.length;
+                    customer.addToCart(products[first].getProductID(), 1 + random.nextInt(3));
+                    customer.addToCart(products[second].getProductID(), 1 + random.nextInt(3));
+                    try {
+                        return customer.placeOrder();
+                    } catch (IllegalStateException e) {
+                        customer.removeFromCart(products[first].getProductID());
+                        customer.removeFromCart(products[second].getProductID());
+                        return null;
+                    }
+                }
+            })){
+                if (order == null){
+                    refused++;
+                    continue;
+                }
+                placed++;
+                for (int line = 0; line < order.getLineCount(); line++){
+                    for (int i = 0; i < products.length; i++){
+                        if (order.getProductID(line) == products[i].getProductID()){
+                            ordered[i] += order.getQuantity(line);
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < products.length; i++){
+                int stock = products[i].getStock();
+                if (stock < 0 || stock != SCARCE_STOCK - ordered[i]) wrong++;
+            }
+        }
+        report("reservation", wrong == 0 && placed + refused == count,
+                "\"placed\":" + placed + ",\"refused\":" + refused + ",\"wrongStock\":" + wrong);
+    }
+
+    /*
+     * Cancels and delivers the same orders from all threads at once.
+     */
+    private static void statusRace(int count) throws Exception {
+        Product product = new Product("Raced", 1, count);
+        Product.addProduct(product);
+        Customer customer = customers("race", 1)[0];
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < count; i++){
+            customer.addToCart(product.getProductID());
+            orders.add(customer.placeOrder());
+        }
+        SalesAnalytics analytics = Order.getSalesAnalytics();
+        long pending = analytics.getOrderCount(Order.Status.PENDING);
+        long delivered = analytics.getOrderCount(Order.Status.DELIVERED);
+        long revenue = analytics.getRevenue();
+        AtomicInteger moves = new AtomicInteger();
+        runAll(2 * count, i -> {
+            Order order = orders.get(i / 2);
+            try {
+                order.setOrderStatus(((i ^ i >> 1) & 1) == 0 ? Order.Status.CANCELLED : Order.Status.DELIVERED);
+                moves.incrementAndGet();
+            } catch (IllegalStateException e) {
+                // the other status got in first
+            }
+            return null;
+        });
+        Set<Order> cancelledIndex = new HashSet<>(Order.getOrdersByStatus(Order.Status.CANCELLED));
+        Set<Order> deliveredIndex = new HashSet<>(Order.getOrdersByStatus(Order.Status.DELIVERED));
+        Set<Order> pendingIndex = new HashSet<>(Order.getOrdersByStatus(Order.Status.PENDING));
+        int cancelled = 0;
+        boolean ok = moves.get() == count;
+        for (Order order : orders){
+            boolean isCancelled = order.getOrderStatus() == Order.Status.CANCELLED;
+            if (isCancelled) cancelled++;
+            ok &= order.getOrderStatus() != Order.Status.PENDING && !pendingIndex.contains(order)
+                    && cancelledIndex.contains(order) == isCancelled
+                    && deliveredIndex.contains(order) == !isCancelled;
+        }
+        ok &= product.getStock() == cancelled
+                && analytics.getOrderCount(Order.Status.PENDING) == pending - count
+                && analytics.getOrderCount(Order.Status.DELIVERED) == delivered + count - cancelled
+                && analytics.getRevenue() == revenue - cancelled * product.getPrice();
+        report("statusRace", ok, "\"cancelled\":" + cancelled + ",\"delivered\":" + (count - cancelled)
+                + ",\"stock\":" + product.getStock());
+    }
+
+    /*
+     * Retries each checkout under one key from all threads at once,
+     * directly and through an order pipeline.
+     */
+    private static void keyedRetry(int count) throws Exception {
+        Product product = new Product("Retried", 1, 2 * count);
+        Product.addProduct(product);
+        Customer[] customers = customers("retry", 2);
+        List<Callable<Object>> calls = new ArrayList<>();
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        boolean ok = true;
+        int errors = 0;
+        try (OrderPipeline pipeline = new OrderPipeline()){
+            for (int round = 0; round < 2 * count; round++){
+                boolean piped = round % 2 == 1;
+                Customer customer = customers[round % 2];
+                String key = "key" + round;
+                customer.addToCart(product.getProductID());
+                calls.clear();
+                for (int t = 0; t < threads; t++){
+                    calls.add(() -> {
+                        barrier.await();
+                        return piped ? customer.placeOrder(pipeline, key).join() : customer.placeOrder(key);
+                    });
+                }
+                Set<Object> given = new HashSet<>();
+                for (Future<Object> result : pool.invokeAll(calls)){
+                    try {
+                        given.add(result.get());
+                    } catch (ExecutionException e) {
+                        errors++;
+                    }
+                }
+                ok &= given.size() == 1 && !given.contains(null);
+            }
+        }
+        int placed = Order.getOrdersByCustomer(customers[0].getCustomerID()).size()
+                + Order.getOrdersByCustomer(customers[1].getCustomerID()).size();
+        ok &= errors == 0 && placed == 2 * count && product.getStock() == 0
+                && customers[0].getShoppingCart().isEmpty() && customers[1].getShoppingCart().isEmpty();
+        report("keyedRetry", ok, "\"rounds\":" + 2 * count + ",\"orders\":" + placed
+                + ",\"errors\":" + errors + ",\"stock\":" + product.getStock());
+    }
+
+    /*
+     * Runs a task for each index from 0 to count, split across the
+     * pool, and collects the results.
+     */
+    private static <T> List<T> runAll(int count, Task<T> task) throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Future<List<T>>> parts = new ArrayList<>();
+        for (int t = 0; t < threads; t++){
+            parts.add(pool.submit(() -> {
+                start.await();
+                List<T> results = new ArrayList<>();
+                for (int i; (i = next.getAndIncrement()) < count; ){
+                    results.add(task.run(i));
+                }
+                return results;
+            }));
+        }
+        List<T> results = new ArrayList<>();
+        for (Future<List<T>> part : parts){
+            results.addAll(part.get());
+        }
+        return results;
+    }
+
+    private interface Task<T> {
+        T run(int i) throws Exception;
+    }
+
+    private static Customer[] customers(String prefix, int count){
+        Customer[] customers = new Customer[count];
+        for (int i = 0; i < count; i++){
+            customers[i] = new Customer(prefix + i, prefix + " " + i);
+            Customer.registerCustomer(customers[i]);
+        }
+        return customers;
+    }
+
+    private static boolean dense(List<Integer> IDs, int first){
+        int[] sorted = IDs.stream().mapToInt(Integer::intValue).sorted().toArray();
+        for (int i = 0; i < sorted.length; i++){
+            if (sorted[i] != first + i) return false;
+        }
+        return true;
+    }
+
+    private static void report(String check, boolean ok, String figures){
+        System.out.printf("{\"check\":\"%s\",\"ok\":%b,%s}%n", check, ok, figures);
+        if (!ok) failed = true;
+    }
+}
@@ -1,8 +1,23 @@
 import com.ecommerce.Customer;
+import com.ecommerce.Money;
+import com.ecommerce.Persistence;
 import com.ecommerce.Product;
+import com.ecommerce.Session;
+import com.ecommerce.http.StorefrontServer;
+import com.ecommerce.metrics.Metrics;
+import com.ecommerce.metrics.Timer;
 import com.ecommerce.orders.Order;
+import com.ecommerce.orders.SalesAnalytics;
+import com.ecommerce.orders.SalesReport;
+import com.ecommerce.render.TableWriter;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.InputMismatchException;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -12,6 +27,21 @@ import java.util.Scanner;
  */
 public class Main {
 
+    /*
+     * Rows fetched per page by admin listings.
+     */
+    private static final int PAGE_SIZE = 500;
+
+    /*
+     * Port the storefront API listens on by default.
+     */
+    private static final int HTTP_PORT = 8080;
+
+    /*
+     * Storefront API, if serving; closed before the store on exit.
+     */
+    private static volatile StorefrontServer server;
+
     /**
      * Entry point to the program.
      * @param args cmd_line arguments
@@ -25,31 +55,54 @@ public class Main {
                 |_____\\___\\___/|_| |_| |_|_| |_| |_|\\___|_|  \\___\\___|
                 """;
         System.out.println(logo);
-        Product.addProduct(new Product("Shoes 👟👟", 20));
-        Product.addProduct(new Product("Wine 🍾", 5));
-        Product.addProduct(new Product("Phone 📞", 500.45));
-        Product.addProduct(new Product("Laptop 💻", 900));
-        Product.addProduct(new Product("Socks 🧦", 2.25));
-        Product.addProduct(new Product("Slippers 🥿", 2.67));
-        Product.addProduct(new Product("TV 📺", 700));
+        try {
+            Persistence.open(Path.of("data"));
+        } catch (IOException e) {
+            System.out.println("Could not restore saved data: " + e.getMessage());
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(Main::shutdown));
+        int arg = 0;
+        if (args.length > 1 && args[0].equals("--import")){
+            if (!importProducts(Path.of(args[1]))) return;
+            arg = 2;
+        }
+        if (Product.getProducts().isEmpty()){
+            Product.addProduct(new Product("Shoes 👟👟", 20, 50));
+            Product.addProduct(new Product("Wine 🍾", 5, 200));
+            Product.addProduct(new Product("Phone 📞", 500.45, 25));
+            Product.addProduct(new Product("Laptop 💻", 900, 10));
+            Product.addProduct(new Product("Socks 🧦", 2.25, 500));
+            Product.addProduct(new Product("Slippers 🥿", 2.67, 100));
+            Product.addProduct(new Product("TV 📺", 700, 15));
+        }
+        if (args.length > arg + 1 && args[arg].equals("--report")){
+            writeReport(Path.of(args[arg + 1]));
+            closeStore();
+            return;
+        }
+        if (args.length > arg && args[arg].equals("--http")){
+            serve(args.length > arg + 1 ? Integer.parseInt(args[arg + 1]) : HTTP_PORT);
+            return;
+        }
 
         Product.viewProducts();
         System.out.println();
         Scanner scanner = new Scanner(System.in);
         boolean loggedIn = false;
         signup(scanner);
-        Customer customer = login(scanner);
+        Session session = login(scanner);
         loggedIn = true;
         System.out.printf("%nOur Product List:%n");
         Product.viewProducts();
         boolean shouldLoop = false;
 
         do{
-            shouldLoop = action(scanner, customer);
+            shouldLoop = action(scanner, session);
             if (!shouldLoop){
                 loggedIn = false;
                 signup(scanner);
-                customer = login(scanner);
+                session = login(scanner);
                 loggedIn = true;
                 shouldLoop = true;
                 System.out.printf("%nOur Product List:%n");
@@ -60,6 +113,76 @@ public class Main {
 
     }
 
+    /**
+     * Imports products from a CSV file of name,price,stock lines.
+     * @param file {@code Path}
+     * @return boolean: true if imported.
+     */
+    private static boolean importProducts(Path file){
+        long start = System.nanoTime();
+        try {
+            int count = Product.importProducts(file);
+            System.out.printf("Imported %d products in %d ms%n", count,
+                    (System.nanoTime() - start) / 1_000_000);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Could not import " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes the end-of-day sales report over the whole order history.
+     * @param file {@code Path}: CSV file to write.
+     */
+    private static void writeReport(Path file){
+        long start = System.nanoTime();
+        try {
+            SalesReport report = SalesReport.generate();
+            report.write(file);
+            System.out.printf("Reported %d orders to %s in %d ms%n", report.getOrders(), file,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            System.out.println("Could not write " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the storefront API, if serving, then the store. Runs on
+     * exit in every mode, so quitting the console saves cached carts.
+     */
+    private static void shutdown(){
+        StorefrontServer serving = server;
+        if (serving != null) serving.close();
+        closeStore();
+    }
+
+    /**
+     * Closes the store, flushing the journal.
+     */
+    private static void closeStore(){
+        try {
+            Persistence.close();
+        } catch (IOException e) {
+            System.err.println("Could not close the store: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Serves the storefront API until the process is stopped.
+     * @param port int: port to listen on.
+     */
+    private static void serve(int port){
+        try {
+            server = new StorefrontServer(new InetSocketAddress(port));
+        } catch (IOException e) {
+            System.out.println("Could not start the storefront API: " + e.getMessage());
+            return;
+        }
+        server.start();
+        System.out.println("Storefront API listening on port " + server.getPort());
+    }
+
     /**
      * Registers a customer into the ecommerce system.
      * @param scanner {@code Scanner}
@@ -108,72 +231,110 @@ public class Main {
     /**
      * logs a customer into the ecommerce system.
      * @param scanner {@code Scanner}
+     * @return {@code Session} of the logged-in customer.
      */
-    private static Customer login(Scanner scanner){
+    private static Session login(Scanner scanner){
         System.out.println("Enter username to login: ");
         String userName = scanner.nextLine();
-        Customer customer = Customer.getCustomer(userName);
-        if (customer == null){
+        Session session = Session.login(userName);
+        if (session == null){
             System.out.println("Username doesn't exist signup!");
             signup(scanner);
             return login(scanner);
         }
         else {
             System.out.println("You are logged in!");
-            System.out.println("Welcome "+ customer.getUsername());
-            return customer;
+            System.out.println("Welcome "+ session.getCustomer().getUsername());
+            return session;
         }
     }
 
     /**
      * Performs action based on user's role (admin/customer).
      * @param scanner {@code Scanner}
-     * @param customer {@code Customer}: a customer in the
-     *                                 ecommerce system
+     * @param session {@code Session}: session of a customer in the
+     *                                ecommerce system
+     * @return boolean: false once the session has ended.
      */
-    private static boolean action(Scanner scanner, Customer customer){
+    private static boolean action(Scanner scanner, Session session){
         System.out.println();
+        if (Session.get(session.getToken()) == null){
+            System.out.println("Your session has expired, please login again");
+            return false;
+        }
         System.out.println("What would you like to do?");
-        if (customer.getUsername().equals("admin")){
+        if (session.isAdmin()){
             System.out.println("Enter 'l' - logout, 'p' - view profile, 'v' - view products, " +
-                    "'c' - view customers, 'o' - view orders, 's' - change order status, 'q' - quit program: ");
+                    "'c' - view customers, 'o' - view orders, 'f' - find orders, " +
+                    "'s' - change order status, 'u' - update a day's orders, " +
+                    "'r' - change product price, 'a' - view sales, " +
+                    "'m' - view metrics, 'q' - quit program: ");
         }
         else {
             System.out.println("Enter 'l' - logout, 'p' - view profile, 'v' - view products, " +
-                    "'b' - buy products, 's' - view cart, 'c' - checkout, 'q' - quit program: ");
+                    "'f' - find products, 'b' - buy products, 's' - view cart, 'c' - checkout, " +
+                    "'q' - quit program: ");
         }
         String cmd = scanner.nextLine();
         System.out.println();
 
-        if (customer.getUsername().equals("admin")){
-            return adminAction(customer, cmd);
-        }
-        else {
-            return customerAction(customer, cmd);
+        Timer timer = commandTimer(session.isAdmin() ? "admin" : "customer", cmd);
+        long start = timer.start();
+        try {
+            if (session.isAdmin()){
+                return adminAction(session, cmd);
+            }
+            else {
+                return customerAction(session, cmd);
+            }
+        } finally {
+            timer.stop(start);
         }
     }
 
+    /**
+     * Retrieves the timer of a console command. Its latency includes
+     * the time taken answering the command's prompts.
+     * @param role {@code String}: admin or customer.
+     * @param cmd {@code String} represents cmd-line input action
+     * @return {@code Timer}
+     */
+    private static Timer commandTimer(String role, String cmd){
+        String command = cmd.length() == 1 && Character.isLetter(cmd.charAt(0)) ? cmd : "other";
+        return Metrics.timer("ecommerce_console_command_seconds", "Latency of console commands.",
+                "role", role, "command", command);
+    }
+
     /**
      * Performs administrator action/commands.
-     * @param customer The {@code Customer} object representing
-     *                 a customer in the e-commerce system.
+     * @param session The {@code Session} of the administrator.
      * @param cmd {@code String} represents cmd-line input action
      * @return boolean
      */
-    private static boolean adminAction(Customer customer, String cmd){
+    private static boolean adminAction(Session session, String cmd){
         return switch (cmd){
             case "l":
-                yield logout();
+                yield logout(session);
             case "v":
                 yield viewProducts();
             case "p":
-                yield viewProfile(customer);
+                yield viewProfile(session.getCustomer());
             case "c":
-                yield viewCustomers(customer);
+                yield viewCustomers(session);
             case "o":
-                yield viewOrders(customer);
+                yield viewOrders(session);
+            case "f":
+                yield findOrders(session);
             case "s":
-                yield changeOrderStatus(customer);
+                yield changeOrderStatus(session);
+            case "u":
+                yield changeOrderStatuses(session);
+            case "r":
+                yield changeProductPrice(session);
+            case "a":
+                yield viewSales();
+            case "m":
+                yield viewMetrics();
             case "q":
                 System.out.println("quitting program...");
                 System.exit(0);
@@ -185,19 +346,22 @@ public class Main {
 
     /**
      * Performs customer's actions/commands.
-     * @param customer The {@code Customer} object representing
-     *                 a customer in the e-commerce system.
+     * @param session The {@code Session} of a customer
+     *                in the e-commerce system.
      * @param cmd {@code String} represents cmd-line input action
      * @return boolean
      */
-    private static boolean customerAction(Customer customer, String cmd){
+    private static boolean customerAction(Session session, String cmd){
+        Customer customer = session.getCustomer();
         return switch (cmd){
             case "l":
-                yield logout();
+                yield logout(session);
             case "v":
                 yield viewProducts();
             case "p":
                 yield viewProfile(customer);
+            case "f":
+                yield findProducts();
             case "b":
                 yield buyProduct(customer);
             case "s":
@@ -218,13 +382,51 @@ public class Main {
 
     /**
      * Logs out of ecommerce system.
+     * @param session {@code Session} to end.
      * @return false
      */
-    private static boolean logout(){
+    private static boolean logout(Session session){
+        Session.logout(session.getToken());
         System.out.println("logging out...");
         return false;
     }
 
+    /**
+     * Displays revenue, orders per status, best selling products and
+     * sales per hour over the last day.
+     * @return true
+     */
+    private static boolean viewSales(){
+        SalesAnalytics sales = Order.getSalesAnalytics();
+        TableWriter table = new TableWriter(System.out);
+        table.cell("Revenue", 12).money(sales.getRevenue(), 12).end();
+        for (Order.Status status : Order.Status.values()){
+            table.cell(status.name(), 12).cell(sales.getOrderCount(status), 12).end();
+        }
+        table.end().cell("ProductID", 10).cell("Product", 20).end("Revenue");
+        for (SalesAnalytics.ProductRevenue top : sales.getTopProducts(10)){
+            Product product = Product.getProduct(top.productID());
+            table.cell(top.productID(), 10).cell(product != null ? product.getName() : "", 20)
+                    .money(top.revenue(), 0).end();
+        }
+        table.end().cell("Hour", 20).cell("Orders", 10).end("Revenue");
+        for (SalesAnalytics.Window hour : sales.getHours(System.currentTimeMillis(), 24)){
+            if (hour.orders() == 0 && hour.revenue() == 0) continue;
+            table.date(hour.start()).pad(20).cell(hour.orders(), 10).money(hour.revenue(), 0).end();
+        }
+        table.flush();
+        return true;
+    }
+
+    /**
+     * Displays the operation timers and gauges of the ecommerce system.
+     * @return true
+     */
+    private static boolean viewMetrics(){
+        System.out.print(Metrics.write(new StringBuilder()));
+        return true;
+    }
+
     /**
      * Displays products in ecommerce system.
      * @return true
@@ -235,6 +437,27 @@ public class Main {
         return true;
     }
 
+    /**
+     * Finds products by name and highest price.
+     * @return true
+     */
+    private static boolean findProducts(){
+        Scanner scanner = new Scanner(System.in);
+        System.out.println("Enter the name of the product (blank for any):");
+        String query = scanner.nextLine();
+        System.out.println("Enter the highest price (blank for any):");
+        String maxPrice = scanner.nextLine();
+        try {
+            long max = maxPrice.isBlank() ? Long.MAX_VALUE : Money.ofDollars(Double.parseDouble(maxPrice));
+            List<Product> found = Product.searchProducts(query, 0, max, PAGE_SIZE);
+            if (found.isEmpty()) System.out.println("No products found");
+            else Product.viewProducts(found);
+        } catch (NumberFormatException e){
+            System.out.println("Price must be a number");
+        }
+        return true;
+    }
+
     /**
      * Displays customer's profile.
      * @param customer The {@code Customer} object representing
@@ -261,11 +484,14 @@ public class Main {
                 "to add to cart 🛒");
         try {
             int ID = scanner.nextInt();
-            if (ID > Product.getProducts().size() || ID <= 0) {
+            if (Product.getProduct(ID) == null) {
                 System.out.println("Product with that ID is not available");
             }
             else {
                 customer.addToCart(ID);
+                System.out.println("Product added successfully");
+                System.out.println();
+                customer.viewCart();
                 return true;
             }
 
@@ -288,78 +514,163 @@ public class Main {
     }
 
     /**
-     * Performs checkout action in an ecommerce system.
+     * Performs checkout action in an ecommerce system, asking for an
+     * address until one is given. The order is placed without an
+     * idempotency key: the console asks for the address in a loop
+     * rather than checking out again, and submits each checkout once,
+     * so there is no retry for a key to recognise. Keys are for the
+     * storefront API, whose clients may resend a checkout.
      * @param customer The {@code Customer} object representing
      *                 a customer in the e-commerce system.
      * @return true
      */
     private static boolean checkout(Customer customer){
         Scanner scanner = new Scanner(System.in);
-        if (customer.getAddress().isBlank()){
+        while (customer.getAddress().isBlank()){
             System.out.println("Please enter your address");
             String address = scanner.nextLine();
-            if (address.isBlank()) return checkout(customer);
-            else {
-                customer.setAddress(address);
-                customer.placeOrder();
-                return true;
-            }
+            if (!address.isBlank()) customer.setAddress(address);
         }
-        else {
-            customer.placeOrder();
+        return placeOrder(customer);
+    }
+
+    /**
+     * Places a customer's order and displays its summary.
+     * @param customer The {@code Customer} object representing
+     *                 a customer in the e-commerce system.
+     * @return true
+     */
+    private static boolean placeOrder(Customer customer){
+        Order order;
+        try {
+            order = customer.placeOrder();
+        } catch (IllegalStateException e){
+            System.out.println(e.getMessage() + ", please update your cart");
+            return true;
+        }
+        if (order == null){
+            System.out.println("Cart🛒 is Empty!");
             return true;
         }
+        order.orderSummary();
+        System.out.println("You've been charged $" + Money.format(order.getTotal()));
+        System.out.println("Cart Cleared!");
+        return true;
     }
 
     /**
      * Admin action - Displays all customers in an ecommerce system.
-     * @param customer The {@code Customer} object representing
-     *                 a customer in the e-commerce system.
+     * @param session The {@code Session} of the administrator.
      * @return true
      */
-    private static boolean viewCustomers(Customer customer){
-        if (customer.getUsername().equals("admin")){
-            System.out.printf("%-5s %-15s %-15s %s%n", "ID", "Username",
-                    "Name", "Address");
-            Customer.getCustomers().forEach(c ->
-                System.out.printf("%-5d %-15s %-15s %s%n", c.getCustomerID(),
-                        c.getUsername(), c.getName(), c.getAddress())
-            );
+    private static boolean viewCustomers(Session session){
+        if (session.isAdmin()){
+            TableWriter table = new TableWriter(System.out);
+            table.cell("ID", 5).cell("Username", 15).cell("Name", 15).end("Address");
+            for (List<Customer> page = Customer.listCustomers(0, PAGE_SIZE); !page.isEmpty();
+                 page = Customer.listCustomers(page.get(page.size() - 1).getCustomerID(), PAGE_SIZE)){
+                for (Customer c : page){
+                    table.cell(c.getCustomerID(), 5).cell(c.getUsername(), 15)
+                            .cell(c.getName(), 15).end(c.getAddress());
+                }
+            }
+            table.flush();
         }
         return true;
     }
 
     /**
      * Admin action - Displays all orders in an ecommerce system.
-     * @param customer The {@code Customer} object representing
-     *                 a customer in the e-commerce system.
+     * @param session The {@code Session} of the administrator.
      * @return true
      */
-    private static boolean viewOrders(Customer customer){
-        if (customer.getUsername().equals("admin")){
-            System.out.printf("%-10s %-15s %-15s %-35s %-10s %s%n", "OrderID", "Name", "Status", "Products", "Total", "Date");
-            Order.getOrderHistory().forEach(o -> {
-                String productsString = o.getProducts().stream()
-                        .map(p -> p.getQuantity() + " * " +p.getProduct().getName())
-                        .reduce("", (acc, p) -> acc + p + ", ");
+    private static boolean viewOrders(Session session){
+        if (session.isAdmin()){
+            TableWriter table = printOrdersHeader();
+            for (List<Order> page = Order.listOrders(0, PAGE_SIZE); !page.isEmpty();
+                 page = Order.listOrders(page.get(page.size() - 1).getOrderID(), PAGE_SIZE)){
+                page.forEach(o -> printOrder(table, o));
+            }
+            table.flush();
+        }
+        return true;
+    }
 
-                System.out.printf("%-10d %-15s %-15s %-35s $%-10.2f %s%n",
-                        o.getOrderID(), o.getCustomer().getName(), o.getOrderStatus(),
-                        productsString, o.getTotal(), o.getDate());
-            });
+    /**
+     * Admin action - Finds orders by customer, status and age.
+     * @param session The {@code Session} of the administrator.
+     * @return true
+     */
+    private static boolean findOrders(Session session){
+        Scanner scanner = new Scanner(System.in);
+        if (!session.isAdmin()) {
+            System.out.println("Only admin can make such search");
+            return true;
+        }
+        System.out.println("Enter the username of the customer (blank for all customers):");
+        String username = scanner.nextLine();
+        int customerID = Order.ANY_CUSTOMER;
+        if (!username.isBlank()){
+            Customer c = Customer.getCustomer(username);
+            if (c == null){
+                System.out.println("Customer with that username doesn't exist");
+                return true;
+            }
+            customerID = c.getCustomerID();
+        }
+        System.out.println("Enter the status of the orders (blank for any status):");
+        String status = scanner.nextLine();
+        System.out.println("Enter how many hours back to search:");
+        try {
+            Order.Status orderStatus = status.isBlank() ? null
+                    : Order.Status.parse(status);
+            long hours = Long.parseLong(scanner.nextLine());
+            long now = System.currentTimeMillis();
+            TableWriter table = printOrdersHeader();
+            Order.findOrders(customerID, orderStatus, now - hours * 60 * 60 * 1000, now + 1)
+                    .forEach(o -> printOrder(table, o));
+            table.flush();
+        } catch (NumberFormatException e){
+            System.out.println("Hours must be a number");
+        } catch (IllegalArgumentException e){
+            System.out.println(e.getMessage());
         }
         return true;
     }
 
+    /**
+     * Starts an orders table.
+     * @return {@code TableWriter} to add order rows to.
+     */
+    private static TableWriter printOrdersHeader(){
+        TableWriter table = new TableWriter(System.out);
+        table.cell("OrderID", 10).cell("Name", 15).cell("Status", 15)
+                .cell("Products", 35).cell("Total", 11).end("Date");
+        return table;
+    }
+
+    /**
+     * Adds an order row to an orders table.
+     * @param table {@code TableWriter}: orders table.
+     * @param o {@code Order}: order to display.
+     */
+    private static void printOrder(TableWriter table, Order o){
+        table.cell(o.getOrderID(), 10).cell(o.getCustomer().getName(), 15)
+                .cell(o.getOrderStatus().name(), 15);
+        for (int line = 0; line < o.getLineCount(); line++){
+            table.text(o.getQuantity(line)).text(" * ").text(o.getProductName(line)).text(", ");
+        }
+        table.pad(35).money(o.getTotal(), 11).date(o.getTime()).end();
+    }
+
     /**
      * Admin action - Changes an order status in an ecommerce system.
-     * @param customer The {@code Customer} object representing
-     *                 a customer in the e-commerce system.
+     * @param session The {@code Session} of the administrator.
      * @return true
      */
-    private static boolean changeOrderStatus(Customer customer){
+    private static boolean changeOrderStatus(Session session){
         Scanner scanner = new Scanner(System.in);
-        if (!customer.getUsername().equals("admin")) {
+        if (!session.isAdmin()) {
             System.out.println("Only admin can make such change");
             return true;
         }
@@ -367,11 +678,11 @@ public class Main {
                 "to change the status of:");
         try {
             int ID =  Integer.parseInt(scanner.nextLine());
-            if (ID > Order.getOrderHistory().size() || ID <= 0) {
+            Order order = Order.getOrder(ID);
+            if (order == null) {
                 System.out.println("Order with that ID is not available");
                 return true;
             }
-            Order order = Order.getOrderHistory().get(ID - 1);
             System.out.println("Enter the status of the order:");
             String status = scanner.nextLine();
             order.setOrderStatus(status);
@@ -382,4 +693,79 @@ public class Main {
         }
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * Admin action - Moves all orders of a day with a status to
+     * another status at once, such as marking a day's pending orders
+     * delivered, and reports the orders that could not move.
+     * @param session The {@code Session} of the administrator.
+     * @return true
+     */
+    private static boolean changeOrderStatuses(Session session){
+        Scanner scanner = new Scanner(System.in);
+        if (!session.isAdmin()) {
+            System.out.println("Only admin can make such change");
+            return true;
+        }
+        try {
+            System.out.println("Enter the day of the orders as yyyy-mm-dd (blank for today):");
+            String day = scanner.nextLine();
+            LocalDate date = day.isBlank() ? LocalDate.now() : LocalDate.parse(day.trim());
+            System.out.println("Enter the status of the orders to change (blank for any status):");
+            String current = scanner.nextLine();
+            System.out.println("Enter the new status of the orders:");
+            Order.Status status = Order.Status.parse(scanner.nextLine());
+            ZoneId zone = ZoneId.systemDefault();
+            List<Order> orders = Order.findOrders(Order.ANY_CUSTOMER,
+                    current.isBlank() ? null : Order.Status.parse(current),
+                    date.atStartOfDay(zone).toInstant().toEpochMilli(),
+                    date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+            Order.StatusChange[] changes = Order.changeStatus(orders, status);
+            int changed = 0;
+            StringBuilder rejected = new StringBuilder();
+            for (int i = 0; i < changes.length; i++){
+                if (changes[i] == Order.StatusChange.CHANGED) changed++;
+                else if (changes[i] == Order.StatusChange.REJECTED){
+                    rejected.append(rejected.isEmpty() ? "" : ", ").append(orders.get(i).getOrderID());
+                }
+            }
+            System.out.println(changed + " of " + orders.size() + " orders changed to " + status);
+            if (!rejected.isEmpty()) System.out.println("Orders that cannot move to " + status + ": " + rejected);
+        } catch (Exception e){
+            System.out.println(e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Admin action - Changes a product's price in an ecommerce system.
+     * Carts keep the price their items were added at.
+     * @param session The {@code Session} of the administrator.
+     * @return true
+     */
+    private static boolean changeProductPrice(Session session){
+        Scanner scanner = new Scanner(System.in);
+        if (!session.isAdmin()) {
+            System.out.println("Only admin can make such change");
+            return true;
+        }
+        System.out.println("Enter the ID of the product you would like " +
+                "to change the price of:");
+        try {
+            int ID = Integer.parseInt(scanner.nextLine());
+            if (Product.getProduct(ID) == null) {
+                System.out.println("Product with that ID is not available");
+                return true;
+            }
+            System.out.println("Enter the new price:");
+            long price = Money.ofDollars(Double.parseDouble(scanner.nextLine()));
+            Product.updatePrice(ID, price);
+            System.out.println("Price changed");
+        } catch (NumberFormatException e){
+            System.out.println("Product ID and price must be numbers");
+        } catch (IllegalArgumentException e){
+            System.out.println(e.getMessage());
+        }
+        return true;
+    }
+}
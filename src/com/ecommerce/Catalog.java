@@ -0,0 +1,460 @@
+package com.ecommerce;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Catalog class stores the products of an ecommerce system column
+ * by column and allocates their IDs. Prices, stock and names live in
+ * primitive arrays indexed by ID, names as UTF-8 bytes in a shared
+ * blob, so a product costs a few dozen bytes and no objects of its
+ * own. {@link Product} instances are flyweights holding only an ID;
+ * the catalog hands out a new one on each lookup.
+ * <p>
+ * Columns are split into fixed-size pages that never move once
+ * created, so growing the catalog copies no data and stock can be
+ * updated in place with compare-and-set. Writes to a page are
+ * serialised; a slot is published by its state, which readers check
+ * before reading the other columns. A range of products written in
+ * bulk is published at once by {@link #commit}.
+ * <p>
+ * Prices are versioned: they live in pages of their own, reached
+ * through an immutable {@link Prices} version. A price change copies
+ * the pages it touches into a new version and publishes it with one
+ * volatile write, so readers never lock and never see half of a bulk
+ * change.
+ * Iteration walks products in ascending ID order.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+final class Catalog extends AbstractCollection<Product> {
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int SLOT_MASK = PAGE_SIZE - 1;
+
+    /*
+     * Slot states after 0, never written: written but not yet
+     * registered, and registered.
+     */
+    private static final byte ALLOCATED = 1;
+    private static final byte REGISTERED = 2;
+
+    private static final VarHandle STATES = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    /*
+     * Last ID handed out by allocate(), and products registered.
+     */
+    private final AtomicInteger lastID = new AtomicInteger();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /*
+     * Page directory, indexed by ID >>> PAGE_BITS. Replaced by a
+     * copy under the catalog's lock when a page is added; the pages
+     * themselves are shared with the copy.
+     */
+    private volatile Page[] pages = new Page[1];
+
+    /*
+     * First and last IDs of each range being committed, in pairs.
+     * Replaced under the catalog's lock; a range is listed until
+     * every slot in it is marked registered.
+     */
+    private volatile int[] committing = new int[0];
+
+    /*
+     * Current prices. Replaced under the catalog's lock.
+     */
+    private volatile Prices prices = new Prices(0, new long[1][]);
+
+    /**
+     * A version of the catalog's prices. Changing a price makes a new
+     * version; a version's prices never change, except that a product
+     * added later gets its price written into the version current at
+     * the time, the slot being unused until then.
+     */
+    static final class Prices {
+        private final int version;
+        private final long[][] pages;
+
+        private Prices(int version, long[][] pages){
+            this.version = version;
+            this.pages = pages;
+        }
+
+        /**
+         * Retrieves the version number, counted from 0 when the
+         * catalog was created.
+         * @return int: version.
+         */
+        int version(){
+            return version;
+        }
+
+        private long[] page(int ID){
+            int index = ID >>> PAGE_BITS;
+            return index < pages.length ? pages[index] : null;
+        }
+    }
+
+    /*
+     * Columns of PAGE_SIZE consecutive IDs.
+     */
+    private static final class Page {
+        final byte[] states = new byte[PAGE_SIZE];
+        final int[] initialStock = new int[PAGE_SIZE];
+        final int[] stock = new int[PAGE_SIZE];
+        final int[] nameOffsets = new int[PAGE_SIZE];
+        final int[] nameLengths = new int[PAGE_SIZE];
+
+        /*
+         * UTF-8 names of the page's products, end to end. Replaced
+         * by a larger copy when full, so a reader holding an older
+         * array still finds the names written before it was replaced.
+         */
+        volatile byte[] names = new byte[PAGE_SIZE * 8];
+        int namesLength;
+
+        synchronized void write(int slot, ByteBuffer name, int from, int length, int stock){
+            byte[] blob = names;
+            if (namesLength + length > blob.length){
+                blob = Arrays.copyOf(blob, Math.max(blob.length * 2, namesLength + length));
+            }
+            name.get(from, blob, namesLength, length);
+            names = blob;
+            nameOffsets[slot] = namesLength;
+            nameLengths[slot] = length;
+            namesLength += length;
+            initialStock[slot] = stock;
+            this.stock[slot] = stock;
+            STATES.setRelease(states, slot, ALLOCATED);
+        }
+    }
+
+    /**
+     * Allocates an ID and writes a product's columns. The product is
+     * not visible until registered.
+     * @param name String: product's name.
+     * @param price long: price in cents.
+     * @param stock int: initial stock.
+     * @return int: the allocated ID, starting from 1.
+     */
+    int allocate(String name, long price, int stock){
+        int ID = lastID.incrementAndGet();
+        write(ID, name, price, stock);
+        return ID;
+    }
+
+    /**
+     * Allocates a range of consecutive IDs, for products written in
+     * bulk with {@link #writePrices} and {@link #write(int, ByteBuffer, int, int, int)}.
+     * @param count int: number of IDs.
+     * @return int: the first ID of the range.
+     */
+    int allocate(int count){
+        return lastID.getAndAdd(count) + 1;
+    }
+
+    /**
+     * Writes the columns of a product whose ID was allocated by an
+     * earlier run, marking the ID as allocated.
+     * @param ID int: an ID not registered.
+     * @param name String: product's name.
+     * @param price long: price in cents.
+     * @param stock int: initial stock.
+     */
+    void restore(int ID, String name, long price, int stock){
+        lastID.accumulateAndGet(ID, Math::max);
+        write(ID, name, price, stock);
+    }
+
+    /**
+     * Writes the prices of consecutive products allocated in bulk,
+     * before their other columns.
+     * @param firstID int: first ID, from {@link #allocate(int)}.
+     * @param values long[]: prices in cents.
+     * @param count int: number of prices.
+     */
+    void writePrices(int firstID, long[] values, int count){
+        for (int ID = firstID; ID < firstID + count; ID = (ID | SLOT_MASK) + 1){
+            page(ID, true);
+        }
+        synchronized (this){
+            Prices current = prices;
+            for (int i = 0; i < count; i++){
+                int ID = firstID + i;
+                current.page(ID)[ID & SLOT_MASK] = values[i];
+            }
+        }
+    }
+
+    /**
+     * Writes the other columns of a product allocated in bulk, taking
+     * its name as UTF-8 bytes from a buffer.
+     * @param ID int: an ID from {@link #allocate(int)}.
+     * @param name {@code ByteBuffer}: holds the name.
+     * @param from int: index of the name's first byte.
+     * @param length int: length of the name in bytes.
+     * @param stock int: initial stock.
+     */
+    void write(int ID, ByteBuffer name, int from, int length, int stock){
+        page(ID, true).write(ID & SLOT_MASK, name, from, length, stock);
+    }
+
+    /**
+     * Changes the prices of registered products, publishing them
+     * together as a new version. Only the price pages changed are
+     * copied.
+     * @param IDs int[]: the products' IDs; a repeated ID takes its
+     *            last price.
+     * @param values long[]: new prices in cents.
+     * @param previous long[]: receives the price each change replaced.
+     * @return int: the new version.
+     */
+    int reprice(int[] IDs, long[] values, long[] previous){
+        for (int ID : IDs){
+            if (!isRegistered(ID)) throw new IllegalArgumentException("Unknown product: " + ID);
+        }
+        synchronized (this){
+            Prices current = prices;
+            long[][] pages = current.pages.clone();
+            boolean[] copied = new boolean[pages.length];
+            for (int i = 0; i < IDs.length; i++){
+                int index = IDs[i] >>> PAGE_BITS;
+                if (!copied[index]){
+                    pages[index] = pages[index].clone();
+                    copied[index] = true;
+                }
+                previous[i] = pages[index][IDs[i] & SLOT_MASK];
+                pages[index][IDs[i] & SLOT_MASK] = values[i];
+            }
+            Prices next = new Prices(current.version + 1, pages);
+            prices = next;
+            return next.version;
+        }
+    }
+
+    /**
+     * Retrieves the current version of the prices.
+     * @return {@code Prices}
+     */
+    Prices prices(){
+        return prices;
+    }
+
+    /**
+     * Registers a range of products written in bulk, making all of
+     * them visible at once.
+     * @param firstID int: first ID of the range.
+     * @param count int: number of products.
+     */
+    void commit(int firstID, int count){
+        if (count <= 0) return;
+        int last = firstID + count - 1;
+        synchronized (this){
+            int[] ranges = Arrays.copyOf(committing, committing.length + 2);
+            ranges[ranges.length - 2] = firstID;
+            ranges[ranges.length - 1] = last;
+            committing = ranges;
+        }
+        size.addAndGet(count);
+        for (int ID = firstID; ID <= last; ID++){
+            STATES.setRelease(page(ID).states, ID & SLOT_MASK, REGISTERED);
+        }
+        synchronized (this){
+            int[] ranges = new int[committing.length - 2];
+            int n = 0;
+            for (int i = 0; i < committing.length; i += 2){
+                if (committing[i] == firstID) continue;
+                ranges[n++] = committing[i];
+                ranges[n++] = committing[i + 1];
+            }
+            committing = ranges;
+        }
+    }
+
+    /**
+     * Registers an allocated product, making it visible.
+     * @param ID int: the product's ID.
+     * @return boolean: true if registered, false if it already was.
+     */
+    boolean register(int ID){
+        Page page = page(ID);
+        if (page == null || !STATES.compareAndSet(page.states, ID & SLOT_MASK, ALLOCATED, REGISTERED)){
+            return false;
+        }
+        size.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Checks if a product is registered.
+     * @param ID int: the product's ID.
+     * @return boolean
+     */
+    boolean isRegistered(int ID){
+        Page page = page(ID);
+        if (page == null) return false;
+        byte state = (byte) STATES.getAcquire(page.states, ID & SLOT_MASK);
+        return state == REGISTERED || state == ALLOCATED && isCommitting(ID);
+    }
+
+    /**
+     * Retrieves a registered product.
+     * @param ID int: the product's ID.
+     * @return {@code Product} flyweight if registered, else null.
+     */
+    Product get(int ID){
+        return isRegistered(ID) ? new Product(ID) : null;
+    }
+
+    /**
+     * Retrieves a page of products in ascending ID order.
+     * @param afterID int: cursor, 0 for the first page.
+     * @param limit int: maximum number of products.
+     * @return {@code List<Product>}: the page, empty past the last product.
+     */
+    List<Product> page(int afterID, int limit){
+        List<Product> page = new ArrayList<>(Math.min(limit, 1024));
+        int last = lastID.get();
+        for (int ID = Math.max(afterID, 0) + 1; ID <= last && page.size() < limit; ID++){
+            if (isRegistered(ID)) page.add(new Product(ID));
+        }
+        return page;
+    }
+
+    String name(int ID){
+        Page page = page(ID);
+        int slot = ID & SLOT_MASK;
+        return new String(page.names, page.nameOffsets[slot], page.nameLengths[slot], StandardCharsets.UTF_8);
+    }
+
+    long price(int ID){
+        return prices.page(ID)[ID & SLOT_MASK];
+    }
+
+    /**
+     * Retrieves a product's price in a version, or its current price
+     * if it was added after that version.
+     * @param version {@code Prices}
+     * @param ID int: the product's ID.
+     * @return long: price in cents.
+     */
+    long price(Prices version, int ID){
+        long[] page = version.page(ID);
+        return page != null ? page[ID & SLOT_MASK] : price(ID);
+    }
+
+    int initialStock(int ID){
+        return page(ID).initialStock[ID & SLOT_MASK];
+    }
+
+    int stock(int ID){
+        return (int) INTS.getVolatile(page(ID).stock, ID & SLOT_MASK);
+    }
+
+    /**
+     * Sets a product's stock if it still holds an expected value.
+     * @param ID int: the product's ID.
+     * @param expected int: stock read before.
+     * @param stock int: new stock.
+     * @return int: the stock found, equal to expected on success.
+     */
+    int compareAndExchangeStock(int ID, int expected, int stock){
+        return (int) INTS.compareAndExchange(page(ID).stock, ID & SLOT_MASK, expected, stock);
+    }
+
+    void addStock(int ID, int delta){
+        INTS.getAndAdd(page(ID).stock, ID & SLOT_MASK, delta);
+    }
+
+    /**
+     * Retrieves the number of registered products.
+     * @return int: size.
+     */
+    @Override
+    public int size(){
+        return size.get();
+    }
+
+    /**
+     * Iterates registered products in ascending ID order.
+     * @return {@code Iterator<Product>}
+     */
+    @Override
+    public Iterator<Product> iterator(){
+        return new Iterator<>() {
+            private final int last = lastID.get();
+            private int ID = 0;
+            private boolean ready;
+
+            @Override
+            public boolean hasNext() {
+                while (!ready && ID < last){
+                    ready = isRegistered(++ID);
+                }
+                return ready;
+            }
+
+            @Override
+            public Product next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                ready = false;
+                return new Product(ID);
+            }
+        };
+    }
+
+    private Page page(int ID){
+        Page[] directory = pages;
+        int index = ID >>> PAGE_BITS;
+        return index < directory.length ? directory[index] : null;
+    }
+
+    private Page page(int ID, boolean create){
+        if (ID <= 0) throw new IllegalArgumentException("Invalid product ID: " + ID);
+        Page page = page(ID);
+        return page != null || !create ? page : addPage(ID >>> PAGE_BITS);
+    }
+
+    private boolean isCommitting(int ID){
+        int[] ranges = committing;
+        for (int i = 0; i < ranges.length; i += 2){
+            if (ID >= ranges[i] && ID <= ranges[i + 1]) return true;
+        }
+        return false;
+    }
+
+    private void write(int ID, String name, long price, int stock){
+        Page page = page(ID, true);
+        int slot = ID & SLOT_MASK;
+        if ((byte) STATES.getAcquire(page.states, slot) == REGISTERED){
+            throw new IllegalStateException("Product already registered: " + ID);
+        }
+        writePrices(ID, new long[] {price}, 1);
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        page.write(slot, ByteBuffer.wrap(bytes), 0, bytes.length, stock);
+    }
+
+    private synchronized Page addPage(int index){
+        Page[] directory = pages;
+        if (index < directory.length && directory[index] != null) return directory[index];
+        long[][] pricePages = Arrays.copyOf(prices.pages, Math.max(prices.pages.length, index + 1));
+        pricePages[index] = new long[PAGE_SIZE];
+        prices = new Prices(prices.version, pricePages);
+        directory = Arrays.copyOf(directory, Math.max(directory.length, index + 1));
+        directory[index] = new Page();
+        pages = directory;
+        return directory[index];
+    }
+}
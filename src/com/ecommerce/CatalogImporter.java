@@ -0,0 +1,330 @@
+package com.ecommerce;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The CatalogImporter class loads products in bulk from a CSV feed
+ * into the {@link Catalog}. The file is memory-mapped in chunks of
+ * whole lines that are parsed in parallel straight from the mapped
+ * bytes: prices and stock are read digit by digit and names are
+ * copied into the catalog as UTF-8, so no String is made per line.
+ * <p>
+ * Each line holds {@code name,price,stock}. The price is in dollars
+ * with at most two decimals; the stock is a whole number, left empty
+ * or omitted for unlimited stock. A name holding a comma or a quote
+ * is quoted, with quotes inside doubled, and cannot span lines. Blank
+ * lines are skipped, as is a first line starting with {@code name,}.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+final class CatalogImporter {
+
+    /*
+     * Bytes of the file whose lines one task parses,
+     * and the longest line accepted.
+     */
+    private static final int CHUNK_SIZE = 8 << 20;
+    private static final int MAX_LINE = 64 << 10;
+
+    /*
+     * Result of parsing a field that is not a valid number.
+     */
+    private static final long INVALID = Long.MIN_VALUE;
+
+    /**
+     * Products written to a catalog and not yet committed.
+     * @param firstID int: ID of the first product.
+     * @param count int: number of products.
+     */
+    record Batch(int firstID, int count) {
+    }
+
+    /*
+     * Lines starting in [start, end) of the file, and the rows
+     * parsed from them. Names are kept as positions in the mapped
+     * buffer, with a negative length for quoted names holding
+     * doubled quotes.
+     */
+    private static final class Chunk {
+        final long start;
+        final long end;
+        MappedByteBuffer buffer;
+        int lines;
+        int rows;
+        long[] prices = new long[1024];
+        int[] stocks = new int[1024];
+        int[] nameFrom = new int[1024];
+        int[] nameLength = new int[1024];
+        int errorLine;
+        String error;
+        int firstID;
+
+        Chunk(long start, long end){
+            this.start = start;
+            this.end = end;
+        }
+
+        void add(int from, int length, long price, int stock){
+            if (rows == prices.length){
+                prices = Arrays.copyOf(prices, rows * 2);
+                stocks = Arrays.copyOf(stocks, rows * 2);
+                nameFrom = Arrays.copyOf(nameFrom, rows * 2);
+                nameLength = Arrays.copyOf(nameLength, rows * 2);
+            }
+            prices[rows] = price;
+            stocks[rows] = stock;
+            nameFrom[rows] = from;
+            nameLength[rows] = length;
+            rows++;
+        }
+
+        void fail(String message){
+            errorLine = lines;
+            error = message;
+        }
+    }
+
+    private CatalogImporter(){
+    }
+
+    /**
+     * Parses a feed and writes its products to consecutive IDs of a
+     * catalog, without registering them. Nothing is written unless
+     * every line is valid.
+     * @param file {@code Path}: CSV feed.
+     * @param catalog {@code Catalog}: destination.
+     * @return {@code Batch}: the products written.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if a line is invalid.
+     */
+    static Batch load(Path file, Catalog catalog) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            long size = channel.size();
+            Chunk[] chunks = new Chunk[(int) Math.max((size + CHUNK_SIZE - 1) / CHUNK_SIZE, 1)];
+            for (int i = 0; i < chunks.length; i++){
+                chunks[i] = new Chunk((long) i * CHUNK_SIZE, Math.min((long) (i + 1) * CHUNK_SIZE, size));
+            }
+            try {
+                Arrays.stream(chunks).parallel().forEach(chunk -> parse(chunk, channel, size));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            int lines = 0;
+            int count = 0;
+            for (Chunk chunk : chunks){
+                if (chunk.error != null){
+                    throw new IllegalArgumentException("Line " + (lines + chunk.errorLine) + ": " + chunk.error);
+                }
+                lines += chunk.lines;
+                count = Math.addExact(count, chunk.rows);
+            }
+            if (count == 0) return new Batch(0, 0);
+            int firstID = catalog.allocate(count);
+            int next = firstID;
+            for (Chunk chunk : chunks){
+                chunk.firstID = next;
+                next += chunk.rows;
+            }
+            Arrays.stream(chunks).parallel().forEach(chunk -> write(chunk, catalog));
+            return new Batch(firstID, count);
+        }
+    }
+
+    /*
+     * Maps the chunk with the byte before it, to find where its first
+     * line starts, and enough bytes after it to finish its last line.
+     */
+    private static void parse(Chunk chunk, FileChannel channel, long size){
+        if (chunk.start == chunk.end) return;
+        long from = Math.max(chunk.start - 1, 0);
+        long to = Math.min(chunk.end + MAX_LINE, size);
+        try {
+            chunk.buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        MappedByteBuffer buffer = chunk.buffer;
+        int pos = (int) (chunk.start - from);
+        int end = (int) (chunk.end - from);
+        if (pos > 0 && buffer.get(pos - 1) != '\n'){
+            while (pos < end && buffer.get(pos) != '\n') pos++;
+            pos++;
+        }
+        while (pos < end){
+            int eol = pos;
+            while (eol < buffer.limit() && buffer.get(eol) != '\n') eol++;
+            chunk.lines++;
+            if (eol == buffer.limit() && to < size){
+                chunk.fail("line longer than " + MAX_LINE + " bytes");
+                return;
+            }
+            int last = eol > pos && buffer.get(eol - 1) == '\r' ? eol - 1 : eol;
+            boolean header = chunk.start == 0 && chunk.lines == 1 && isHeader(buffer, pos, last);
+            if (!header && last > pos && !parseLine(chunk, buffer, pos, last)) return;
+            pos = eol + 1;
+        }
+    }
+
+    private static boolean parseLine(Chunk chunk, ByteBuffer buffer, int from, int to){
+        int nameFrom;
+        int nameLength;
+        int comma;
+        if (buffer.get(from) == '"'){
+            boolean doubled = false;
+            int i = from + 1;
+            while (true){
+                if (i >= to){
+                    chunk.fail("unterminated quote");
+                    return false;
+                }
+                if (buffer.get(i) == '"'){
+                    if (i + 1 < to && buffer.get(i + 1) == '"'){
+                        doubled = true;
+                        i += 2;
+                        continue;
+                    }
+                    break;
+                }
+                i++;
+            }
+            nameFrom = from + 1;
+            nameLength = doubled ? -(i - nameFrom) : i - nameFrom;
+            comma = i + 1;
+            if (comma >= to || buffer.get(comma) != ','){
+                chunk.fail("expected a comma after the name");
+                return false;
+            }
+        }
+        else {
+            comma = indexOf(buffer, ',', from, to);
+            nameFrom = from;
+            nameLength = comma - from;
+        }
+        if (nameLength == 0){
+            chunk.fail("missing name");
+            return false;
+        }
+        if (comma >= to){
+            chunk.fail("missing price");
+            return false;
+        }
+        int priceEnd = indexOf(buffer, ',', comma + 1, to);
+        long price = parsePrice(buffer, comma + 1, priceEnd);
+        if (price == INVALID){
+            chunk.fail("invalid price");
+            return false;
+        }
+        int stock = Product.UNLIMITED;
+        if (priceEnd < to){
+            if (indexOf(buffer, ',', priceEnd + 1, to) < to){
+                chunk.fail("too many fields");
+                return false;
+            }
+            long parsed = parseStock(buffer, priceEnd + 1, to);
+            if (parsed == INVALID){
+                chunk.fail("invalid stock");
+                return false;
+            }
+            stock = (int) parsed;
+        }
+        chunk.add(nameFrom, nameLength, price, stock);
+        return true;
+    }
+
+    /*
+     * Copies each row's columns into the catalog. Names with doubled
+     * quotes are unescaped into a scratch buffer first.
+     */
+    private static void write(Chunk chunk, Catalog catalog){
+        catalog.writePrices(chunk.firstID, chunk.prices, chunk.rows);
+        ByteBuffer scratch = null;
+        for (int row = 0; row < chunk.rows; row++){
+            int from = chunk.nameFrom[row];
+            int length = chunk.nameLength[row];
+            if (length >= 0){
+                catalog.write(chunk.firstID + row, chunk.buffer, from, length, chunk.stocks[row]);
+                continue;
+            }
+            if (scratch == null) scratch = ByteBuffer.allocate(MAX_LINE);
+            int n = 0;
+            for (int i = from; i < from - length; i++){
+                byte b = chunk.buffer.get(i);
+                scratch.put(n++, b);
+                if (b == '"') i++;
+            }
+            catalog.write(chunk.firstID + row, scratch, 0, n, chunk.stocks[row]);
+        }
+        chunk.buffer = null;
+    }
+
+    private static boolean isHeader(ByteBuffer buffer, int from, int to){
+        String header = "name,";
+        if (to - from < header.length()) return false;
+        for (int i = 0; i < header.length(); i++){
+            if (Character.toLowerCase(buffer.get(from + i)) != header.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer buffer, char c, int from, int to){
+        for (int i = from; i < to; i++){
+            if (buffer.get(i) == c) return i;
+        }
+        return to;
+    }
+
+    /*
+     * Reads dollars with at most two decimals as cents.
+     */
+    private static long parsePrice(ByteBuffer buffer, int from, int to){
+        while (from < to && buffer.get(from) == ' ') from++;
+        while (to > from && buffer.get(to - 1) == ' ') to--;
+        long cents = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (int i = from; i < to; i++){
+            byte b = buffer.get(i);
+            if (b == '.' && decimals < 0 && digits > 0){
+                decimals = 0;
+            }
+            else if (b >= '0' && b <= '9' && (decimals < 0 ? digits < 15 : decimals < 2)){
+                cents = cents * 10 + (b - '0');
+                if (decimals < 0) digits++;
+                else decimals++;
+            }
+            else {
+                return INVALID;
+            }
+        }
+        if (digits == 0 || decimals == 0) return INVALID;
+        for (int d = Math.max(decimals, 0); d < 2; d++){
+            cents *= 10;
+        }
+        return cents;
+    }
+
+    /*
+     * Reads a whole number of units, or unlimited when empty.
+     */
+    private static long parseStock(ByteBuffer buffer, int from, int to){
+        while (from < to && buffer.get(from) == ' ') from++;
+        while (to > from && buffer.get(to - 1) == ' ') to--;
+        if (from == to) return Product.UNLIMITED;
+        if (to - from > 9) return INVALID;
+        long stock = 0;
+        for (int i = from; i < to; i++){
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') return INVALID;
+            stock = stock * 10 + (b - '0');
+        }
+        return stock;
+    }
+}
@@ -1,10 +1,21 @@
 package com.ecommerce;
 
+import com.ecommerce.metrics.Metrics;
+import com.ecommerce.metrics.Timer;
+import com.ecommerce.orders.Cart;
 import com.ecommerce.orders.CartItem;
+import com.ecommerce.orders.CartStore;
+import com.ecommerce.orders.IdempotencyCache;
 import com.ecommerce.orders.Order;
+import com.ecommerce.orders.OrderPipeline;
+import com.ecommerce.render.TableWriter;
 
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The Customer class represents a customer entity in an ecommerce
@@ -12,6 +23,10 @@ import java.util.List;
  * It contains information about customers such as their name,
  * contact details, and membership status.
  * It also performs actions such as purchasing a product.
+ * Cart and checkout methods synchronize on the customer, so one
+ * customer may be served by several sessions at once. Carts are kept
+ * in a {@link CartStore} rather than on the customer, so carts left
+ * idle are spilled to disk and read back on the customer's next visit.
  *
  * @author Deni Wisdom Ochiche
  */
@@ -19,24 +34,62 @@ public class Customer {
 
     /*
      * Stores all customers in an ecommerce
-     * system.
+     * system and allocates their IDs.
      */
-    private static final ArrayList<Customer> customers = new ArrayList<>();
+    private static final Registry<Customer> customers = new Registry<>();
 
     /*
-     * Keeps track of customers for ID allocation.
+     * Index of registered customers by username.
      */
-    private static int length = 0;
+    private static final Map<String, Customer> customersByUsername = new ConcurrentHashMap<>();
+
+    /*
+     * Read-only view over registered customers.
+     */
+    private static final Collection<Customer> customersView =
+            Collections.unmodifiableCollection(customers);
+
+    /*
+     * Timers of the customer operations. Lookups and cart additions
+     * take tens of nanoseconds, so they are sampled.
+     */
+    private static final String OPERATION = "ecommerce_operation_seconds";
+    private static final String OPERATION_HELP = "Latency of storefront operations.";
+    private static final Timer getCustomerTimer =
+            Metrics.sampledTimer(64, OPERATION, OPERATION_HELP, "operation", "getCustomer");
+    private static final Timer addToCartTimer =
+            Metrics.sampledTimer(64, OPERATION, OPERATION_HELP, "operation", "addToCart");
+    private static final Timer placeOrderTimer =
+            Metrics.timer(OPERATION, OPERATION_HELP, "operation", "placeOrder");
+
+    /*
+     * Shopping carts of all customers, by customer ID.
+     */
+    private static final CartStore carts = new CartStore(CartStore.DEFAULT_CAPACITY);
+
+    /*
+     * Orders placed under idempotency keys, so retried checkouts
+     * are given the order already placed.
+     */
+    private static final IdempotencyCache placedOrders =
+            new IdempotencyCache(IdempotencyCache.DEFAULT_CAPACITY, IdempotencyCache.DEFAULT_TTL);
+
+    static {
+        Metrics.gauge("ecommerce_customers", "Registered customers.", customers::size);
+        Metrics.gauge("ecommerce_carts_cached", "Carts held in memory.", carts::getCachedCount);
+        Metrics.gauge("ecommerce_carts_spilled", "Carts spilled to disk.", carts::getSpilledCount);
+    }
+
     private final int customerID;
-    private String name;
-    private String address = "";
+    private volatile String name;
+    private volatile String address = "";
     private String username;
 
     /*
-     * Contains list of products added to customer's cart
-     * in an ecommerce system.
+     * Order queued on a pipeline and not settled yet, guarded by the
+     * customer's lock. The cart keeps its items until it is placed.
      */
-    private ArrayList<CartItem> shoppingCart = new ArrayList<>();
+    private CompletableFuture<Order> queuedOrder;
 
     /**
      * Customer constructor
@@ -44,7 +97,11 @@ public class Customer {
      * @param name String:customer's name.
      */
     public Customer(String username, String name){
-        this.customerID = ++length;
+        this(customers.nextID(), username, name);
+    }
+
+    private Customer(int customerID, String username, String name){
+        this.customerID = customerID;
         this.name = name;
         this.username = username;
     }
@@ -82,35 +139,82 @@ public class Customer {
     }
 
     /**
-     * Retrieves List of Customers.
-     * @return List(Customer) List of Customers.
+     * Retrieves a read-only view of registered Customers, in ID order.
+     * The view is not a copy; it reflects later registrations.
+     * @return Collection(Customer) registered Customers.
+     */
+    public static Collection<Customer> getCustomers() {
+        return customersView;
+    }
+
+    /**
+     * Retrieves a page of registered Customers in ID order.
+     * @param afterID int: ID of the last customer of the previous
+     *                page, 0 for the first page.
+     * @param limit int: maximum number of customers.
+     * @return List(Customer): the page, empty past the last customer.
      */
-    public static List<Customer> getCustomers() {
-        return List.copyOf(customers);
+    public static List<Customer> listCustomers(int afterID, int limit) {
+        return customers.page(afterID, limit);
     }
 
     /**
-     * Modifies customer's address.
+     * Modifies customer's address, saving it only if it changed.
      * @param address String: new address of a customer.
      */
-    public void setAddress(String address) {
+    public synchronized void setAddress(String address) {
+        if (address.equals(this.address)) return;
         this.address = address;
+        Persistence.customerUpdated(this);
     }
 
     /**
      * Registers customer.
      * @param customer {@code Customer}: a new customer.
+     * @return boolean: true if registered, false if the username
+     *                  is already taken.
      */
-    public static void registerCustomer(Customer customer){
-        customers.add(customer);
+    public static boolean registerCustomer(Customer customer){
+        if (customersByUsername.putIfAbsent(customer.getUsername(), customer) != null){
+            return false;
+        }
+        if (!customers.register(customer.getCustomerID(), customer)){
+            customersByUsername.remove(customer.getUsername(), customer);
+            return false;
+        }
+        Persistence.customerRegistered(customer);
+        return true;
+    }
+
+    /**
+     * Restores a customer saved by an earlier run, keeping its ID.
+     * @param ID int: the customer's ID.
+     * @param username String: customer's username.
+     * @param name String: customer's name.
+     * @return {@code Customer}: the registered customer.
+     */
+    public static Customer restoreCustomer(int ID, String username, String name){
+        Customer existing = customers.get(ID);
+        if (existing != null) return existing;
+        customers.reserve(ID);
+        Customer customer = new Customer(ID, username, name);
+        return registerCustomer(customer) ? customer : getCustomer(username);
     }
 
     /**
      * Retrieves items in customer's cart.
      * @return {@code List(CartItem)} customer's cart.
      */
-    public List<CartItem> getShoppingCart() {
-        return List.copyOf(shoppingCart);
+    public synchronized List<CartItem> getShoppingCart() {
+        return carts.apply(customerID, Cart::toList);
+    }
+
+    /**
+     * Retrieves the store holding all customers' carts.
+     * @return {@code CartStore}
+     */
+    public static CartStore getCartStore(){
+        return carts;
     }
 
     /**
@@ -119,100 +223,331 @@ public class Customer {
      * @return {@code Customer} if found, else null.
      */
     public static Customer getCustomer(String username){
-        for (var customer: getCustomers()){
-            if (customer.getUsername().equals(username)){
-                return customer;
-            }
-        }
-        return null;
+        long start = getCustomerTimer.start();
+        Customer customer = customersByUsername.get(username);
+        getCustomerTimer.stop(start);
+        return customer;
+    }
+
+    /**
+     * Retrieves a customer.
+     * @param ID int: ID of customer.
+     * @return {@code Customer} if found, else null.
+     */
+    public static Customer getCustomer(int ID){
+        return customers.get(ID);
     }
 
     /**
      * Changes a customer's name.
      * @param name String: new name of customer.
      */
-    public void setName(String name) {
+    public synchronized void setName(String name) {
         this.name = name;
+        Persistence.customerUpdated(this);
     }
 
     /**
      * Adds a product to customer's shopping cart.
      * @param ID int: the product's ID.
+     * @return boolean: true if added, false if no such product.
      */
-    public void addToCart(int ID){
-        Product product = Product.getProducts().get(ID - 1);
-        for (var c: shoppingCart){
-            if (c.getProduct().getProductID() == product
-                    .getProductID()){
-                int quantity = c.getQuantity();
-                c.setQuantity(++quantity);
-                System.out.println("Product added successfully");
-                System.out.println();
-                viewCart();
-                return;
-            }
+    public boolean addToCart(int ID){
+        return addToCart(ID, 1);
+    }
+
+    /**
+     * Adds a quantity of a product to customer's shopping cart.
+     * @param ID int: the product's ID.
+     * @param quantity int: how many to add.
+     * @return boolean: true if added, false if no such product.
+     * @throws IllegalArgumentException if the quantity is not positive
+     *                                  or would take the line past
+     *                                  {@code CartItem.MAX_QUANTITY}.
+     */
+    public synchronized boolean addToCart(int ID, int quantity){
+        long start = addToCartTimer.start();
+        try {
+            Product product = Product.getProduct(ID);
+            if (product == null) return false;
+            carts.apply(customerID, cart -> {
+                cart.add(product, quantity);
+                return null;
+            });
+            return true;
+        } finally {
+            addToCartTimer.stop(start);
         }
-        CartItem cartItem = new CartItem(product);
-        shoppingCart.add(cartItem);
-        System.out.println("Product added successfully");
-        System.out.println();
-        viewCart();
     }
 
     /**
-     * Removes a product from customer's shopping cart.
+     * Sets the quantity of a product in customer's shopping cart,
+     * removing it when the quantity is zero.
      * @param ID int: the product's ID.
+     * @param quantity int: new quantity.
+     * @return boolean: true if set, false if no such product.
+     * @throws IllegalArgumentException if the quantity is negative or
+     *                                  past {@code CartItem.MAX_QUANTITY}.
      */
-    public void removeFromCart(int ID){
-        shoppingCart.removeIf(c -> c.getProduct().getProductID() == ID);
-        System.out.println("Product removed successfully");
+    public synchronized boolean setCartQuantity(int ID, int quantity){
+        Product product = Product.getProduct(ID);
+        if (product == null) return false;
+        carts.apply(customerID, cart -> {
+            if (quantity == 0) cart.remove(ID);
+            else cart.setQuantity(product, quantity);
+            return null;
+        });
+        return true;
+    }
 
+    /**
+     * Removes a product from customer's shopping cart.
+     * @param ID int: the product's ID.
+     * @return boolean: true if the product was in the cart.
+     */
+    public synchronized boolean removeFromCart(int ID){
+        return carts.apply(customerID, cart -> cart.remove(ID));
     }
 
     /**
      * Calculates the total amount to be paid by the customer.
-     * @return total double: sum of product prices in shopping cart.
+     * @return total long: sum of product prices in shopping cart, in cents.
      */
-    public double calculateTotal(){
-        return shoppingCart.stream()
-                .mapToDouble(CartItem::getPrice).sum();
+    public synchronized long calculateTotal(){
+        return carts.apply(customerID, Cart::getTotal);
     }
 
     /**
      * Displays products in customer's shopping cart.
      */
-    public void viewCart(){
-        if (shoppingCart.isEmpty()){
+    public synchronized void viewCart(){
+        List<CartItem> items = getShoppingCart();
+        if (items.isEmpty()){
             System.out.println("Cart is Empty!");
             return;
         }
-        System.out.printf("%-5s %-15s %-10s %s%n", "ID",
-                "Product", "Qty", "Price");
-        shoppingCart.forEach(c ->
-            System.out.printf("%-5d %-15s %-10d %.2f%n", c.getProduct()
-                            .getProductID(), c.getProduct().getName(),
-                    c.getQuantity(), c.getPrice())
+        TableWriter table = new TableWriter(System.out);
+        table.cell("ID", 5).cell("Product", 15).cell("Qty", 10).end("Price");
+        long total = 0;
+        for (CartItem c : items){
+            table.cell(c.getProduct().getProductID(), 5).cell(c.getProduct().getName(), 15)
+                    .cell(c.getQuantity(), 10).amount(c.getPrice()).end();
+            total += c.getPrice();
+        }
+        table.cell("Total Price", 10).amount(total).end();
+        table.flush();
+    }
 
-        );
+    /**
+     * Places a customer's order, charge customer, clears cart.
+     * @return {@code Order}: the order placed, null if the cart is empty.
+     * @throws IllegalStateException if a product is out of stock, or
+     *                               an order of the customer is still
+     *                               queued on a pipeline; the cart is
+     *                               kept.
+     */
+    public synchronized Order placeOrder(){
+        long start = placeOrderTimer.start();
+        try {
+            checkNotQueued();
+            Order order = carts.apply(customerID, cart ->
+                    cart.isEmpty() ? null : new Order(this, cart.getItems(), cart.getTotal()));
+            if (order == null) return null;
+            Order.addOrderToHistory(order);
+            clearCart();
+            return order;
+        } finally {
+            placeOrderTimer.stop(start);
+        }
+    }
 
-        System.out.printf("%-10s %-5.2f%n", "Total Price", calculateTotal());
+    /**
+     * Places a customer's order under an idempotency key. A checkout
+     * retried with a key already used is given the order placed then,
+     * without placing another; the lookup takes no lock.
+     * @param key String: idempotency key chosen by the client.
+     * @return {@code Order}: the order placed under the key, null if
+     *         none was and the cart is empty.
+     * @throws IllegalStateException if a product is out of stock;
+     *                               the cart is kept.
+     */
+    public Order placeOrder(String key){
+        CompletableFuture<Order> placed = placedOrders.get(customerID, key);
+        if (placed != null) return placed.join();
+        synchronized (this){
+            placed = placedOrders.get(customerID, key);
+            if (placed != null) return placed.join();
+            Order order = placeOrder();
+            if (order != null) placedOrders.put(customerID, key, CompletableFuture.completedFuture(order));
+            return order;
+        }
     }
 
     /**
-     * Places a customer's order, charge customer, clears cart.
+     * Places a customer's order through an order pipeline without
+     * waiting for it to be processed. The items ordered are taken
+     * out of the cart once the order is placed; if it fails, the
+     * cart is kept. The order is queued outside the customer's lock,
+     * so a thread waiting on a full pipeline holds no monitor.
+     * @param pipeline {@code OrderPipeline} to queue the order on.
+     * @return {@code CompletableFuture(Order)}: the order placed,
+     *         completing with null if the cart is empty.
+     * @throws IllegalStateException if a product is out of stock, or
+     *                               an order of the customer is still
+     *                               queued; the cart is kept.
+     * @throws InterruptedException if interrupted while the pipeline
+     *                              is full; the cart is kept.
      */
-    public void placeOrder(){
-        if (shoppingCart.isEmpty()){
-            System.out.println("Cart🛒 is Empty!");
+    public CompletableFuture<Order> placeOrder(OrderPipeline pipeline)
+            throws InterruptedException {
+        return queueOrder(pipeline, null);
+    }
+
+    /**
+     * Places a customer's order through an order pipeline under an
+     * idempotency key. A checkout retried with a key already used is
+     * given the order placed then, without placing another, and waits
+     * for it if it is still queued; the lookup takes no lock. A key
+     * whose order fails is forgotten once the order is withdrawn, so
+     * the cart, which is kept, may be ordered again under it.
+     * @param pipeline {@code OrderPipeline} to queue the order on.
+     * @param key String: idempotency key chosen by the client.
+     * @return {@code CompletableFuture(Order)}: the order placed under
+     *         the key, completing with null if none was and the cart
+     *         is empty.
+     * @throws IllegalStateException if a product is out of stock;
+     *                               the cart is kept.
+     * @throws InterruptedException if interrupted while the pipeline
+     *                              is full; the cart is kept.
+     */
+    public CompletableFuture<Order> placeOrder(OrderPipeline pipeline, String key)
+            throws InterruptedException {
+        CompletableFuture<Order> placed = placedOrders.get(customerID, key);
+        if (placed != null) return placed;
+        return queueOrder(pipeline, key);
+    }
+
+    /*
+     * Claims the customer's one queued order and, under a key, the
+     * key, holding the customer's lock; then submits the cart to the
+     * pipeline without it. The claim is released once the order is
+     * settled, and a key whose order fails is forgotten.
+     */
+    private CompletableFuture<Order> queueOrder(OrderPipeline pipeline, String key)
+            throws InterruptedException {
+        long start = placeOrderTimer.start();
+        try {
+            CompletableFuture<Order> order = new CompletableFuture<>();
+            List<CartItem> items;
+            synchronized (this){
+                if (key != null){
+                    CompletableFuture<Order> placed = placedOrders.get(customerID, key);
+                    if (placed != null) return placed;
+                }
+                checkNotQueued();
+                items = getShoppingCart();
+                if (items.isEmpty()) return CompletableFuture.completedFuture(null);
+                queuedOrder = order;
+                if (key != null){
+                    placedOrders.put(customerID, key, order);
+                    order.whenComplete((o, e) -> {
+                        if (e != null) placedOrders.remove(customerID, key, order);
+                    });
+                }
+            }
+            CompletableFuture<Order> placed;
+            try {
+                placed = pipeline.submit(this, items, items.stream().mapToLong(CartItem::getPrice).sum());
+            } catch (InterruptedException | RuntimeException e) {
+                settle(order, null, e);
+                throw e;
+            }
+            placed.whenComplete((o, e) -> settle(order, o, e));
+            return order;
+        } finally {
+            placeOrderTimer.stop(start);
+        }
+    }
+
+    /*
+     * Completes the customer's queued order. A failed order is
+     * released first, so it may be retried at once; a placed one is
+     * finished after, so callers have it before the cart is updated.
+     */
+    private void settle(CompletableFuture<Order> order, Order placed, Throwable failure){
+        if (failure != null){
+            synchronized (this){
+                if (queuedOrder == order) queuedOrder = null;
+            }
+            order.completeExceptionally(failure);
             return;
         }
-        double total = calculateTotal();
-        Order order = new Order(this, getShoppingCart(), total);
-        Order.addOrderToHistory(order);
-        order.orderSummary();
-        System.out.println("You've been charged $" + total);
-        shoppingCart = new ArrayList<>();
-        System.out.println("Cart Cleared!");
+        order.complete(placed);
+        synchronized (this){
+            finishQueued(order);
+        }
+    }
+
+    /*
+     * Refuses a checkout while an order is queued. An order placed
+     * but not yet finished is finished here, so a customer checking
+     * out again as soon as the last order completes is not refused.
+     * Called holding the customer's lock.
+     */
+    private void checkNotQueued(){
+        if (queuedOrder != null && queuedOrder.isDone()) finishQueued(queuedOrder);
+        if (queuedOrder != null){
+            throw new IllegalStateException("An order is already being placed");
+        }
+    }
+
+    /*
+     * Takes the items of a placed order out of the cart and releases
+     * it, once, by whichever of the pipeline and the next checkout
+     * gets here first. The order is in history, so a cart that cannot
+     * be updated is reported rather than failing the order, which
+     * would let it be placed again. Called holding the customer's lock.
+     */
+    private void finishQueued(CompletableFuture<Order> order){
+        if (queuedOrder != order) return;
+        queuedOrder = null;
+        Order placed = order.join();
+        try {
+            removeOrdered(placed);
+        } catch (RuntimeException e) {
+            System.err.println("Could not update cart of customer " + customerID
+                    + " after order " + placed.getOrderID() + ": " + e.getMessage());
+        }
+    }
+
+    /*
+     * Takes the lines of an order placed through a pipeline out of
+     * the cart, leaving what was added to it while the order was
+     * queued.
+     */
+    private void removeOrdered(Order order){
+        carts.apply(customerID, cart -> {
+            for (int line = 0; line < order.getLineCount(); line++){
+                CartItem item = cart.getItem(order.getProductID(line));
+                if (item == null) continue;
+                int left = item.getQuantity() - order.getQuantity(line);
+                if (left > 0) cart.setQuantity(item.getProduct(), left);
+                else cart.remove(order.getProductID(line));
+            }
+            return null;
+        });
+    }
+
+    /*
+     * Empties the cart once its order is placed. Orders are placed
+     * outside the cart's lock, which is safe as the customer's lock
+     * is held throughout.
+     */
+    private void clearCart(){
+        carts.apply(customerID, cart -> {
+            cart.clear();
+            return null;
+        });
     }
 
 }
@@ -0,0 +1,67 @@
+package com.ecommerce;
+
+/**
+ * The Money class holds helpers for amounts of money in an
+ * ecommerce system.
+ * Amounts are plain {@code long} values in minor units (cents), so
+ * sums are exact and arithmetic never allocates.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class Money {
+
+    /*
+     * Minor units in one major unit.
+     */
+    public static final int CENTS = 100;
+
+    private Money(){
+    }
+
+    /**
+     * Converts an amount in dollars to cents, rounding to the
+     * nearest cent.
+     * @param amount double: amount in dollars.
+     * @return long: amount in cents.
+     */
+    public static long ofDollars(double amount){
+        return Math.round(amount * CENTS);
+    }
+
+    /**
+     * Multiplies a unit price by a quantity.
+     * @param cents long: unit price in cents.
+     * @param quantity int: quantity.
+     * @return long: price in cents.
+     * @throws ArithmeticException if the result overflows.
+     */
+    public static long times(long cents, int quantity){
+        return Math.multiplyExact(cents, quantity);
+    }
+
+    /**
+     * Appends an amount formatted as dollars, e.g. {@code 12.05}.
+     * @param sb {@code StringBuilder} to append to.
+     * @param cents long: amount in cents.
+     * @return {@code StringBuilder} sb.
+     */
+    public static StringBuilder appendTo(StringBuilder sb, long cents){
+        if (cents < 0){
+            sb.append('-');
+            cents = -cents;
+        }
+        long fraction = cents % CENTS;
+        sb.append(cents / CENTS).append('.');
+        if (fraction < 10) sb.append('0');
+        return sb.append(fraction);
+    }
+
+    /**
+     * Formats an amount as dollars, e.g. {@code 12.05}.
+     * @param cents long: amount in cents.
+     * @return String: formatted amount.
+     */
+    public static String format(long cents){
+        return appendTo(new StringBuilder(24), cents).toString();
+    }
+}
@@ -0,0 +1,403 @@
+package com.ecommerce;
+
+import com.ecommerce.journal.Journal;
+import com.ecommerce.journal.Store;
+import com.ecommerce.orders.Order;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Persistence class makes the product, customer and order
+ * registries of an ecommerce system durable.
+ * Each change is appended to a {@link Store} before the call that made
+ * it returns, and the store takes periodic snapshots in the background
+ * so a restart replays the latest snapshot plus the changes since.
+ * Shopping carts are kept apart, in a file of their own the
+ * {@link com.ecommerce.orders.CartStore} spills idle carts to and
+ * writes the rest to on close.
+ * Until {@link #open} is called, nothing is persisted.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class Persistence {
+
+    /*
+     * Record types.
+     */
+    private static final byte ORDER_PLACED = 1;
+    private static final byte STATUS_CHANGED = 2;
+    private static final byte PRODUCT_ADDED = 3;
+    private static final byte CUSTOMER_REGISTERED = 4;
+    private static final byte CUSTOMER_UPDATED = 5;
+    private static final byte PRICES_CHANGED = 6;
+
+    /*
+     * Most price changes in one record.
+     */
+    private static final int PRICES_PER_RECORD = 4096;
+
+    /*
+     * Longest time between snapshots, and the journal
+     * size that triggers one sooner.
+     */
+    private static final Duration SNAPSHOT_INTERVAL = Duration.ofMinutes(5);
+    private static final long MAX_SEGMENT_BYTES = 64L << 20;
+
+    /*
+     * File in the store directory holding shopping carts.
+     */
+    private static final String CARTS_FILE = "carts.bin";
+
+    /*
+     * Store of the running system, null until opened.
+     */
+    private static volatile Store store;
+
+    /*
+     * Prices replayed for products not restored yet, by product ID.
+     * A product repriced just after it was added may have the change
+     * logged ahead of the product itself.
+     */
+    private static final Map<Integer, Long> pendingPrices = new HashMap<>();
+
+    private Persistence(){
+    }
+
+    /**
+     * Opens the store, restoring products, customers, orders and carts
+     * saved by earlier runs, and starts background snapshots.
+     * @param directory {@code Path}: store directory, created if missing.
+     * @throws IOException if recovery fails.
+     */
+    public static synchronized void open(Path directory) throws IOException {
+        if (store != null) throw new IllegalStateException("Store is already open");
+        Store opened;
+        try {
+            opened = Store.open(directory, Persistence::replay);
+        } finally {
+            pendingPrices.clear();
+        }
+        try {
+            Customer.getCartStore().open(directory.resolve(CARTS_FILE));
+        } catch (IOException | RuntimeException e) {
+            try {
+                opened.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        opened.startSnapshots(Persistence::writeSnapshot, SNAPSHOT_INTERVAL, MAX_SEGMENT_BYTES);
+        store = opened;
+    }
+
+    /**
+     * Stops snapshots and closes the store, if open, writing out the
+     * carts held in memory.
+     * @throws IOException if the final flush fails.
+     */
+    public static synchronized void close() throws IOException {
+        Store open = store;
+        store = null;
+        if (open == null) return;
+        try {
+            Customer.getCartStore().close();
+        } finally {
+            open.close();
+        }
+    }
+
+    /**
+     * Takes a snapshot now.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public static void snapshot() throws IOException {
+        Store open = store;
+        if (open == null) throw new IllegalStateException("Store is not open");
+        open.snapshot(Persistence::writeSnapshot);
+    }
+
+    /**
+     * Records a newly registered product.
+     * @param product {@code Product}
+     */
+    static void productAdded(Product product){
+        if (store != null) append(PRODUCT_ADDED, encode(product));
+    }
+
+    /**
+     * Records a batch of newly registered products, waiting for the
+     * disk once for the whole batch.
+     * @param products {@code List<Product>}
+     */
+    static void productsAdded(List<Product> products){
+        Store open = store;
+        if (open == null) return;
+        List<ByteBuffer> records = new ArrayList<>(products.size());
+        for (Product product : products){
+            records.add(encode(product));
+        }
+        try {
+            open.append(PRODUCT_ADDED, records);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not persist change", e);
+        }
+    }
+
+    /**
+     * Records price changes, waiting for the disk once for all of them.
+     * @param IDs int[]: the products' IDs.
+     * @param prices long[]: new prices in cents.
+     */
+    static void pricesChanged(int[] IDs, long[] prices){
+        Store open = store;
+        if (open == null) return;
+        List<ByteBuffer> records = new ArrayList<>();
+        for (int from = 0; from < IDs.length; from += PRICES_PER_RECORD){
+            int count = Math.min(PRICES_PER_RECORD, IDs.length - from);
+            ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + count * (Integer.BYTES + Long.BYTES));
+            record.putInt(count);
+            for (int i = from; i < from + count; i++){
+                record.putInt(IDs[i]).putLong(prices[i]);
+            }
+            records.add(record.flip());
+        }
+        try {
+            open.append(PRICES_CHANGED, records);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not persist change", e);
+        }
+    }
+
+    /**
+     * Records a newly registered customer.
+     * @param customer {@code Customer}
+     */
+    static void customerRegistered(Customer customer){
+        if (store != null) append(CUSTOMER_REGISTERED, encode(customer));
+    }
+
+    /**
+     * Records a change to a customer's name or address.
+     * @param customer {@code Customer}
+     */
+    static void customerUpdated(Customer customer){
+        if (store != null) append(CUSTOMER_UPDATED, encode(customer));
+    }
+
+    /**
+     * Records an order added to order history.
+     * @param order {@code Order}
+     */
+    public static void orderPlaced(Order order){
+        if (store != null) append(ORDER_PLACED, encode(order));
+    }
+
+    /**
+     * Records a batch of orders added to order history, waiting for
+     * the disk once for the whole batch.
+     * @param orders {@code List<Order>}
+     */
+    public static void ordersPlaced(List<Order> orders){
+        Store open = store;
+        if (open == null) return;
+        List<ByteBuffer> records = new ArrayList<>(orders.size());
+        for (Order order : orders){
+            records.add(encode(order));
+        }
+        try {
+            open.append(ORDER_PLACED, records);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not persist change", e);
+        }
+    }
+
+    /**
+     * Records a change of an order's status.
+     * @param order {@code Order}
+     */
+    public static void orderStatusChanged(Order order){
+        if (store != null) append(STATUS_CHANGED, encodeStatus(order));
+    }
+
+    /**
+     * Records the status changes of a batch of orders, waiting for
+     * the disk once for the whole batch.
+     * @param orders {@code List<Order>}
+     */
+    public static void orderStatusesChanged(List<Order> orders){
+        Store open = store;
+        if (open == null || orders.isEmpty()) return;
+        List<ByteBuffer> records = new ArrayList<>(orders.size());
+        for (Order order : orders){
+            records.add(encodeStatus(order));
+        }
+        try {
+            open.append(STATUS_CHANGED, records);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not persist change", e);
+        }
+    }
+
+    private static ByteBuffer encodeStatus(Order order){
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + 1);
+        return record.putInt(order.getOrderID()).put((byte) order.getOrderStatus().ordinal()).flip();
+    }
+
+    private static void append(byte type, ByteBuffer record){
+        Store open = store;
+        if (open == null) return;
+        try {
+            open.append(type, record);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not persist change", e);
+        }
+    }
+
+    /*
+     * Writes every registered entity. The order iterator is taken
+     * first: it stops at the last order ID allocated at that point,
+     * and those orders only refer to products already registered, so
+     * every product they need is written ahead of them.
+     */
+    private static void writeSnapshot(Store.Sink sink) throws IOException {
+        Iterator<Order> orders = Order.getOrderHistory().iterator();
+        for (Product product : Product.getProducts()){
+            sink.record(PRODUCT_ADDED, encode(product));
+        }
+        for (Customer customer : Customer.getCustomers()){
+            sink.record(CUSTOMER_REGISTERED, encode(customer));
+        }
+        while (orders.hasNext()){
+            sink.record(ORDER_PLACED, encode(orders.next()));
+        }
+    }
+
+    private static ByteBuffer encode(Product product){
+        ByteBuffer record = ByteBuffer.allocate(2 * Integer.BYTES + Long.BYTES
+                + Journal.sizeOf(product.getName()));
+        record.putInt(product.getProductID()).putLong(product.getPrice());
+        Journal.putString(record, product.getName());
+        record.putInt(product.getInitialStock());
+        return record.flip();
+    }
+
+    private static ByteBuffer encode(Customer customer){
+        String username = customer.getUsername();
+        String name = customer.getName();
+        String address = customer.getAddress();
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + Journal.sizeOf(username)
+                + Journal.sizeOf(name) + Journal.sizeOf(address));
+        record.putInt(customer.getCustomerID());
+        Journal.putString(record, username);
+        Journal.putString(record, name);
+        Journal.putString(record, address);
+        return record.flip();
+    }
+
+    /*
+     * The customer's username and name travel with the order, so an
+     * order can be restored even if its customer record is missing.
+     */
+    private static ByteBuffer encode(Order order){
+        Customer customer = order.getCustomer();
+        String username = customer.getUsername();
+        String name = customer.getName();
+        int lines = order.getLineCount();
+        ByteBuffer record = ByteBuffer.allocate(3 * Integer.BYTES + 2 * Long.BYTES + 1
+                + Journal.sizeOf(username) + Journal.sizeOf(name)
+                + lines * (2 * Integer.BYTES + Long.BYTES));
+        record.putInt(order.getOrderID()).putInt(customer.getCustomerID());
+        Journal.putString(record, username);
+        Journal.putString(record, name);
+        record.putLong(order.getTime())
+                .put((byte) order.getOrderStatus().ordinal())
+                .putLong(order.getTotal())
+                .putInt(lines);
+        for (int line = 0; line < lines; line++){
+            record.putInt(order.getProductID(line))
+                    .putInt(order.getQuantity(line))
+                    .putLong(order.getUnitPrice(line));
+        }
+        return record.flip();
+    }
+
+    /*
+     * Applies a recovered record. Records may repeat what the
+     * snapshot already holds, so each is applied idempotently.
+     */
+    private static void replay(byte type, ByteBuffer record) throws IOException {
+        try {
+            switch (type){
+                case PRODUCT_ADDED -> {
+                    int ID = record.getInt();
+                    long price = record.getLong();
+                    String name = Journal.getString(record);
+                    int stock = record.remaining() >= Integer.BYTES ? record.getInt() : Product.UNLIMITED;
+                    Product.restoreProduct(ID, name, price, stock);
+                    Long pending = pendingPrices.remove(ID);
+                    if (pending != null) Product.updatePrice(ID, pending);
+                }
+                case CUSTOMER_REGISTERED, CUSTOMER_UPDATED -> {
+                    int ID = record.getInt();
+                    String username = Journal.getString(record);
+                    String name = Journal.getString(record);
+                    Customer customer = Customer.restoreCustomer(ID, username, name);
+                    customer.setName(name);
+                    customer.setAddress(Journal.getString(record));
+                }
+                case ORDER_PLACED -> {
+                    int ID = record.getInt();
+                    Customer customer = Customer.restoreCustomer(record.getInt(),
+                            Journal.getString(record), Journal.getString(record));
+                    long date = record.getLong();
+                    Order.Status status = Order.Status.values()[record.get()];
+                    long total = record.getLong();
+                    int lines = record.getInt();
+                    int[] productIDs = new int[lines];
+                    int[] quantities = new int[lines];
+                    long[] unitPrices = new long[lines];
+                    for (int i = 0; i < lines; i++){
+                        productIDs[i] = record.getInt();
+                        quantities[i] = record.getInt();
+                        unitPrices[i] = record.getLong();
+                    }
+                    Order.restoreOrder(ID, customer, productIDs, quantities, unitPrices,
+                            total, status, date);
+                }
+                case PRICES_CHANGED -> {
+                    int count = record.getInt();
+                    int[] IDs = new int[count];
+                    long[] prices = new long[count];
+                    int known = 0;
+                    for (int i = 0; i < count; i++){
+                        IDs[known] = record.getInt();
+                        prices[known] = record.getLong();
+                        if (Product.getProduct(IDs[known]) != null) known++;
+                        else pendingPrices.put(IDs[known], prices[known]);
+                    }
+                    Product.updatePrices(Arrays.copyOf(IDs, known), Arrays.copyOf(prices, known));
+                }
+                case STATUS_CHANGED -> {
+                    int ID = record.getInt();
+                    Order order = Order.getOrder(ID);
+                    if (order == null) throw new IOException("Status change for unknown order " + ID);
+                    order.restoreStatus(Order.Status.values()[record.get()]);
+                }
+                default -> throw new IOException("Unknown record type: " + type);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
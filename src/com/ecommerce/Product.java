@@ -1,6 +1,12 @@
 package com.ecommerce;
 
-import java.util.ArrayList;
+import com.ecommerce.metrics.Metrics;
+import com.ecommerce.render.TableWriter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -8,35 +14,92 @@ import java.util.List;
  * system.
  * It stores information about products such as their name,
  * price, and quantity.
+ * <p>
+ * Stock is an atomic counter per product, reserved with
+ * compare-and-set at checkout, so buyers of different products never
+ * contend and buyers of the same product never block each other.
+ * <p>
+ * Product data lives in the columns of the {@link Catalog}; a Product
+ * is a flyweight holding only the ID, so lookups hand out new
+ * instances and products compare equal by ID.
+ * <p>
+ * Prices can change while shoppers browse. Each change publishes a
+ * new catalog version atomically, and cart items keep the price they
+ * were added at.
  *
  * @author Deni Wisdom Ochiche
  */
 public class Product {
 
+    /**
+     * Stock of a product that never runs out.
+     */
+    public static final int UNLIMITED = -1;
+
     /*
      * Stores all products in an ecommerce
-     * system.
+     * system and allocates their IDs.
+     */
+    private static final Catalog products = new Catalog();
+
+    /*
+     * Read-only view over registered products.
+     */
+    private static final Collection<Product> productsView =
+            Collections.unmodifiableCollection(products);
+
+    /*
+     * Search index over product names and prices.
+     */
+    private static final ProductIndex index = new ProductIndex();
+
+    /*
+     * Products per journal write when importing.
      */
-    private static final ArrayList<Product> products = new ArrayList<>();
+    private static final int IMPORT_BATCH = 4096;
+
+    static {
+        Metrics.gauge("ecommerce_products", "Products in the catalog.", products::size);
+    }
 
     /*
-     * Keeps track of length for
-     * product ID allocation.
+     * The product's row in the catalog. Price is in cents. Of the
+     * stock, only the units the product was added with are saved:
+     * recovery subtracts the restored orders from them again.
      */
-    private static int length = 0;
     private final int productID;
-    private String name;
-    private double price;
 
     /**
-     * Product class constructor.
+     * Product class constructor, for a product with unlimited stock.
      * @param name product's name.
-     * @param price product's price.
+     * @param price product's price in dollars.
      */
     public Product(String name, double price){
-        this.productID = ++length;
-        this.name = name;
-        this.price = price;
+        this(name, price, UNLIMITED);
+    }
+
+    /**
+     * Product class constructor.
+     * @param name product's name.
+     * @param price product's price in dollars.
+     * @param stock int: units in stock, or {@code UNLIMITED}.
+     */
+    public Product(String name, double price, int stock){
+        this(products.allocate(name, Money.ofDollars(price), checkStock(stock)));
+    }
+
+    /*
+     * Creates a view of a product already in the catalog.
+     */
+    Product(int productID){
+        this.productID = productID;
+    }
+
+    private static int checkStock(int stock){
+        if (stock < 0 && stock != UNLIMITED){
+            throw new IllegalArgumentException("Stock cannot be negative: " + stock);
+        }
+        return stock;
     }
 
     /**
@@ -52,38 +115,253 @@ public class Product {
      * @return String product's name.
      */
     public String getName() {
-        return name;
+        return products.name(productID);
     }
 
     /**
      * Retrieves a product's price.
-     * @return String product's price.
+     * @return long product's price in cents.
+     */
+    public long getPrice() {
+        return products.price(productID);
+    }
+
+    /**
+     * Retrieves the current version of the catalog's prices, which
+     * each price change increments.
+     * @return int: version, 0 before any change in this run.
+     */
+    public static int getCatalogVersion() {
+        return products.prices().version();
+    }
+
+    /**
+     * Changes the price of a product.
+     * @param ID int: the product's ID.
+     * @param price long: new price in cents.
+     * @return int: the new catalog version.
+     * @throws IllegalArgumentException if the product is not
+     *                                  registered or the price is negative.
+     */
+    public static int updatePrice(int ID, long price) {
+        return updatePrices(new int[] {ID}, new long[] {price});
+    }
+
+    /**
+     * Changes the prices of products, publishing all of them at once
+     * as a new catalog version. Shoppers are never blocked: they see
+     * either every new price or none.
+     * @param IDs int[]: the products' IDs.
+     * @param prices long[]: new prices in cents, one per ID.
+     * @return int: the new catalog version.
+     * @throws IllegalArgumentException if a product is not registered
+     *                                  or a price is negative.
+     */
+    public static int updatePrices(int[] IDs, long[] prices) {
+        if (IDs.length != prices.length){
+            throw new IllegalArgumentException("Expected one price per product");
+        }
+        if (IDs.length == 0) return getCatalogVersion();
+        for (long price : prices){
+            if (price < 0) throw new IllegalArgumentException("Price cannot be negative: " + price);
+        }
+        long[] previous = new long[IDs.length];
+        int version = products.reprice(IDs, prices, previous);
+        index.reprice(IDs, previous, prices);
+        Persistence.pricesChanged(IDs, prices);
+        return version;
+    }
+
+    /**
+     * Retrieves the units in stock and not reserved by an order.
+     * @return int: units available, or {@code UNLIMITED}.
+     */
+    public int getStock() {
+        return getInitialStock() == UNLIMITED ? UNLIMITED : products.stock(productID);
+    }
+
+    /**
+     * Retrieves the units the product was added with.
+     * @return int: initial stock, or {@code UNLIMITED}.
      */
-    public double getPrice() {
-        return price;
+    public int getInitialStock() {
+        return products.initialStock(productID);
+    }
+
+    /**
+     * Reserves units of stock if enough are available.
+     * @param quantity int: units to reserve, greater than zero.
+     * @return boolean: true if reserved, false if out of stock.
+     */
+    public boolean reserve(int quantity) {
+        if (getInitialStock() == UNLIMITED) return true;
+        int available = products.stock(productID);
+        while (available >= quantity){
+            int witness = products.compareAndExchangeStock(productID, available, available - quantity);
+            if (witness == available) return true;
+            available = witness;
+        }
+        return false;
+    }
+
+    /**
+     * Returns reserved units to stock.
+     * @param quantity int: units to return.
+     */
+    public void release(int quantity) {
+        if (getInitialStock() != UNLIMITED) products.addStock(productID, quantity);
+    }
+
+    /**
+     * Takes units from stock without checking availability, for
+     * orders restored from an earlier run, which were reserved then.
+     * @param quantity int: units to take.
+     */
+    public void deduct(int quantity) {
+        if (getInitialStock() != UNLIMITED) products.addStock(productID, -quantity);
     }
 
     /**
      * Registers a product
      */
     public static void addProduct(Product p){
-        products.add(p);
+        if (products.register(p.getProductID())){
+            index.add(p);
+            Persistence.productAdded(p);
+        }
+    }
+
+    /**
+     * Restores a product saved by an earlier run, keeping its ID.
+     * @param ID int: the product's ID.
+     * @param name String: product's name.
+     * @param price long: product's price in cents.
+     * @param stock int: units the product was added with,
+     *              or {@code UNLIMITED}.
+     * @return {@code Product}: the registered product.
+     */
+    public static Product restoreProduct(int ID, String name, long price, int stock){
+        Product existing = products.get(ID);
+        if (existing != null) return existing;
+        products.restore(ID, name, price, checkStock(stock));
+        addProduct(new Product(ID));
+        return products.get(ID);
+    }
+
+    /**
+     * Imports products in bulk from a CSV file of
+     * {@code name,price,stock} lines, with prices in dollars and an
+     * empty stock for unlimited. The file is parsed in parallel, and
+     * its products are added to the catalog all at once; if any line
+     * is invalid, none are.
+     * @param file {@code Path}: CSV file.
+     * @return int: number of products imported.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if a line is invalid.
+     */
+    public static int importProducts(Path file) throws IOException {
+        CatalogImporter.Batch batch = CatalogImporter.load(file, products);
+        int last = batch.firstID() + batch.count() - 1;
+        index.addRange(batch.firstID(), batch.count());
+        products.commit(batch.firstID(), batch.count());
+        for (int ID = batch.firstID(); ID <= last; ID += IMPORT_BATCH){
+            Persistence.productsAdded(products.page(ID - 1, Math.min(IMPORT_BATCH, last - ID + 1)));
+        }
+        return batch.count();
+    }
+
+    /**
+     * Retrieves a registered product.
+     * @param ID int: the product's ID.
+     * @return {@code Product} if found, else null.
+     */
+    public static Product getProduct(int ID){
+        return products.get(ID);
     }
 
     /**
-     * Returns the list of products registered.
-     * @return List(Product).
+     * Returns a read-only view of the products registered, in ID order.
+     * @return Collection(Product).
      */
-    public static List<Product> getProducts() {
-        return List.copyOf(products);
+    public static Collection<Product> getProducts() {
+        return productsView;
+    }
+
+    /**
+     * Returns a page of the products registered, in ID order.
+     * @param afterID int: ID of the last product of the previous
+     *                page, 0 for the first page.
+     * @param limit int: maximum number of products.
+     * @return List(Product): the page, empty past the last product.
+     */
+    public static List<Product> listProducts(int afterID, int limit) {
+        return products.page(afterID, limit);
+    }
+
+    /**
+     * Searches products by name and price. Every word of the query
+     * must appear in the name; the last may be the start of a word.
+     * @param query String: words to find, blank for any name.
+     * @param minPrice long: lowest price in cents, inclusive.
+     * @param maxPrice long: highest price in cents, inclusive.
+     * @param limit int: maximum number of products.
+     * @return List(Product): matches, or matches by price for a
+     *         blank query.
+     */
+    public static List<Product> searchProducts(String query, long minPrice, long maxPrice, int limit) {
+        return index.search(query, minPrice, maxPrice, limit);
+    }
+
+    /**
+     * Suggests words from product names that start with a prefix.
+     * @param prefix String: start of a word.
+     * @param limit int: maximum number of words.
+     * @return List(String): words in alphabetical order.
+     */
+    public static List<String> completeProductName(String prefix, int limit) {
+        return index.complete(prefix, limit);
+    }
+
+    /**
+     * Compares products by ID.
+     * @param o Object: another object.
+     * @return boolean: true if o views the same product.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Product other && other.productID == productID;
+    }
+
+    /**
+     * Hashes a product by ID.
+     * @return int: hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(productID);
     }
 
     /**
      * Displays all registered products.
      */
     public static void viewProducts(){
-        System.out.printf("%-15s %-15s %s%n", "ID", "Product", "Price");
-        products.forEach(p -> System.out.printf("%-15d %-15s $%.2f%n"
-                , p.getProductID(), p.getName(), p.getPrice()));
+        viewProducts(products);
+    }
+
+    /**
+     * Displays products, with prices from a single catalog version.
+     * @param list {@code Collection(Product)}: products to display.
+     */
+    public static void viewProducts(Collection<Product> list){
+        Catalog.Prices version = products.prices();
+        TableWriter table = new TableWriter(System.out);
+        table.cell("ID", 15).cell("Product", 15).cell("Price", 12).end("Stock");
+        for (Product p : list){
+            table.cell(p.getProductID(), 15).cell(p.getName(), 15)
+                    .money(products.price(version, p.getProductID()), 12);
+            if (p.getStock() == UNLIMITED) table.end("-");
+            else table.text(p.getStock()).end();
+        }
+        table.flush();
     }
 }
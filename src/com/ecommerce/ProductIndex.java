@@ -0,0 +1,377 @@
+package com.ecommerce;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.IntStream;
+
+/**
+ * The ProductIndex class indexes the product catalog for search:
+ * a sorted term dictionary over the words of product names, each
+ * term mapping to the IDs of the products containing it, and a
+ * sorted map from each price to the IDs of the products at it.
+ * <p>
+ * A query looks up each of its words and intersects their ID lists,
+ * starting from the shortest, so its cost follows the rarest word
+ * rather than the size of the catalog. The last word of a query is
+ * also matched as a prefix, for search as you type. Products are
+ * added as they are registered, and readers never lock.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+class ProductIndex {
+
+    /*
+     * Products per slice when indexing a range in parallel.
+     */
+    private static final int SLICE_SIZE = 1 << 16;
+
+    private final NavigableMap<String, Postings> terms = new ConcurrentSkipListMap<>();
+    private final NavigableMap<Long, Postings> prices = new ConcurrentSkipListMap<>();
+
+    /*
+     * Sorted IDs of the products with a term or a price. Appends are
+     * serialised; readers take the size, then the array, and see
+     * every ID written before that size was published.
+     */
+    private static final class Postings {
+        private volatile int[] ids = new int[2];
+        private volatile int size;
+
+        synchronized void add(int ID){
+            int[] current = ids;
+            int n = size;
+            if (n > 0 && current[n - 1] >= ID){
+                int at = Arrays.binarySearch(current, 0, n, ID);
+                if (at >= 0) return;
+                // Out of order, when restoring: publish a new array.
+                int[] inserted = new int[Math.max(current.length, n + 1)];
+                System.arraycopy(current, 0, inserted, 0, -at - 1);
+                inserted[-at - 1] = ID;
+                System.arraycopy(current, -at - 1, inserted, -at, n + at + 1);
+                ids = inserted;
+            }
+            else if (n == current.length){
+                int[] grown = Arrays.copyOf(current, n * 2);
+                grown[n] = ID;
+                ids = grown;
+            }
+            else {
+                current[n] = ID;
+            }
+            size = n + 1;
+        }
+
+        /*
+         * Adds IDs given in ascending order: appended in place when
+         * they all follow the last ID, else merged into a new array.
+         */
+        synchronized void addAll(IdList batch){
+            int[] added = batch.ids;
+            int count = batch.size;
+            int[] current = ids;
+            int n = size;
+            if (count == 0) return;
+            if (n > 0 && current[n - 1] >= added[0]){
+                int[] merged = new int[Math.max(current.length, n + count)];
+                int i = 0;
+                int j = 0;
+                int m = 0;
+                while (i < n || j < count){
+                    int next = j == count || i < n && current[i] <= added[j] ? current[i++] : added[j++];
+                    if (m == 0 || merged[m - 1] != next) merged[m++] = next;
+                }
+                Arrays.fill(merged, m, merged.length, Integer.MAX_VALUE);
+                ids = merged;
+                size = m;
+                return;
+            }
+            if (n + count > current.length){
+                current = Arrays.copyOf(current, Math.max(current.length * 2, n + count));
+            }
+            System.arraycopy(added, 0, current, n, count);
+            ids = current;
+            size = n + count;
+        }
+
+        /*
+         * Removes IDs given in ascending order. Readers may hold the
+         * size from before, so the array is replaced by a copy of the
+         * same length whose freed slots hold an ID no product has.
+         */
+        synchronized void removeAll(IdList batch){
+            int[] current = ids;
+            int n = size;
+            int[] removed = new int[current.length];
+            int m = 0;
+            for (int i = 0, j = 0; i < n; i++){
+                while (j < batch.size && batch.ids[j] < current[i]) j++;
+                if (j == batch.size || batch.ids[j] != current[i]) removed[m++] = current[i];
+            }
+            if (m == n) return;
+            Arrays.fill(removed, m, removed.length, Integer.MAX_VALUE);
+            ids = removed;
+            size = m;
+        }
+
+        int size(){
+            return size;
+        }
+
+        boolean contains(int ID){
+            int n = size;
+            return Arrays.binarySearch(ids, 0, n, ID) >= 0;
+        }
+    }
+
+    /*
+     * IDs gathered for a term or a price while indexing a slice of a
+     * range or repricing. Owned by one thread.
+     */
+    private static final class IdList {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int ID){
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = ID;
+        }
+
+        IdList sort(){
+            Arrays.sort(ids, 0, size);
+            return this;
+        }
+    }
+
+    private record Slice(Map<String, IdList> terms, Map<Long, IdList> prices) {
+    }
+
+    /**
+     * Indexes a newly registered product.
+     * @param product {@code Product}
+     */
+    void add(Product product){
+        for (String term : tokenize(product.getName())){
+            terms.computeIfAbsent(term, t -> new Postings()).add(product.getProductID());
+        }
+        prices.computeIfAbsent(product.getPrice(), p -> new Postings()).add(product.getProductID());
+    }
+
+    /**
+     * Indexes a range of products written in bulk. Slices of the
+     * range are tokenized in parallel, gathering IDs per term, then
+     * appended in ID order, once per term and slice.
+     * @param firstID int: first ID of the range.
+     * @param count int: number of products.
+     */
+    void addRange(int firstID, int count){
+        int slices = (count + SLICE_SIZE - 1) / SLICE_SIZE;
+        List<Slice> gathered = IntStream.range(0, slices).parallel()
+                .mapToObj(i -> gather(firstID + i * SLICE_SIZE, Math.min(SLICE_SIZE, count - i * SLICE_SIZE)))
+                .toList();
+        for (Slice slice : gathered){
+            slice.terms().forEach((term, ids) -> terms.computeIfAbsent(term, t -> new Postings()).addAll(ids));
+            slice.prices().forEach((price, ids) -> prices.computeIfAbsent(price, p -> new Postings()).addAll(ids));
+        }
+    }
+
+    private static Slice gather(int firstID, int count){
+        Slice slice = new Slice(new HashMap<>(), new HashMap<>());
+        for (int ID = firstID; ID < firstID + count; ID++){
+            Product product = new Product(ID);
+            for (String term : tokenize(product.getName())){
+                slice.terms().computeIfAbsent(term, t -> new IdList()).add(ID);
+            }
+            slice.prices().computeIfAbsent(product.getPrice(), p -> new IdList()).add(ID);
+        }
+        return slice;
+    }
+
+    /**
+     * Moves repriced products to their new prices, one pass over each
+     * price's IDs. Changes are given in the order they were made.
+     * @param IDs int[]: the products' IDs.
+     * @param oldPrices long[]: price each change replaced, in cents.
+     * @param newPrices long[]: new prices in cents.
+     */
+    void reprice(int[] IDs, long[] oldPrices, long[] newPrices){
+        // A product changed twice moves from its first price to its last.
+        Map<Integer, long[]> moves = new HashMap<>();
+        for (int i = 0; i < IDs.length; i++){
+            long oldPrice = oldPrices[i];
+            moves.computeIfAbsent(IDs[i], ID -> new long[] {oldPrice, 0})[1] = newPrices[i];
+        }
+        Map<Long, IdList> removed = new HashMap<>();
+        Map<Long, IdList> added = new HashMap<>();
+        moves.forEach((ID, move) -> {
+            if (move[0] == move[1]) return;
+            removed.computeIfAbsent(move[0], p -> new IdList()).add(ID);
+            added.computeIfAbsent(move[1], p -> new IdList()).add(ID);
+        });
+        removed.forEach((price, ids) -> {
+            Postings postings = prices.get(price);
+            if (postings != null) postings.removeAll(ids.sort());
+        });
+        added.forEach((price, ids) -> prices.computeIfAbsent(price, p -> new Postings()).addAll(ids.sort()));
+    }
+
+    /**
+     * Finds products whose names contain every word of a query, the
+     * last word matching as a prefix, within a price range.
+     * @param query String: words to match; blank matches every product.
+     * @param minPrice long: lowest price in cents, inclusive.
+     * @param maxPrice long: highest price in cents, inclusive.
+     * @param limit int: maximum number of products.
+     * @return {@code List<Product>}: matches in ID order for each word
+     *         completing the prefix, or in price order for a blank query.
+     */
+    List<Product> search(String query, long minPrice, long maxPrice, int limit){
+        List<Product> result = new ArrayList<>();
+        if (limit <= 0 || minPrice > maxPrice) return result;
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) return byPrice(minPrice, maxPrice, limit);
+        String prefix = words.remove(words.size() - 1);
+
+        Postings[] lists = new Postings[words.size()];
+        for (int i = 0; i < lists.length; i++){
+            lists[i] = terms.get(words.get(i));
+            if (lists[i] == null) return result;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(Postings::size));
+        Map<String, Postings> completions = completions(prefix);
+        if (completions.isEmpty()) return result;
+
+        // Candidates come from whichever is smaller: the rarest whole
+        // word, or the words completing the prefix taken together. A
+        // single word query has only the completions, so they are not
+        // sized.
+        if (lists.length > 0 && completesAtLeast(completions, lists[0].size())){
+            int n = lists[0].size;
+            int[] ids = lists[0].ids;
+            for (int i = 0; i < n; i++){
+                if (containsAll(lists, 1, ids[i]) && collect(ids[i], prefix, minPrice, maxPrice, result)
+                        && result.size() == limit) break;
+            }
+            return result;
+        }
+        // A name may hold several completions; only then track duplicates.
+        Set<Integer> seen = completions.size() > 1 ? new HashSet<>() : null;
+        for (Postings postings : completions.values()){
+            int n = postings.size;
+            int[] ids = postings.ids;
+            for (int i = 0; i < n; i++){
+                if (containsAll(lists, 0, ids[i]) && (seen == null || seen.add(ids[i]))
+                        && collect(ids[i], prefix, minPrice, maxPrice, result)
+                        && result.size() == limit) return result;
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Checks whether the words completing a prefix hold at least a
+     * number of postings, stopping once they do.
+     */
+    private static boolean completesAtLeast(Map<String, Postings> completions, int size){
+        long completed = 0;
+        for (Postings postings : completions.values()){
+            completed += postings.size();
+            if (completed >= size) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lists the indexed words starting with a prefix, for autocomplete.
+     * @param prefix String: start of a word.
+     * @param limit int: maximum number of words.
+     * @return {@code List<String>}: words in alphabetical order.
+     */
+    List<String> complete(String prefix, int limit){
+        List<String> result = new ArrayList<>();
+        String normalized = prefix.toLowerCase(Locale.ROOT).strip();
+        if (normalized.isEmpty()) return result;
+        for (String term : completions(normalized).keySet()){
+            if (result.size() == limit) break;
+            result.add(term);
+        }
+        return result;
+    }
+
+    private List<Product> byPrice(long minPrice, long maxPrice, int limit){
+        List<Product> result = new ArrayList<>();
+        for (Postings postings : prices.subMap(minPrice, true, maxPrice, true).values()){
+            int n = postings.size;
+            int[] ids = postings.ids;
+            for (int i = 0; i < n; i++){
+                if (result.size() == limit) return result;
+                // The index moves a repriced product just after its price changes.
+                Product product = Product.getProduct(ids[i]);
+                if (product != null && product.getPrice() >= minPrice && product.getPrice() <= maxPrice){
+                    result.add(product);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Postings> completions(String prefix){
+        return terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private static boolean containsAll(Postings[] lists, int from, int ID){
+        for (int i = from; i < lists.length; i++){
+            if (!lists[i].contains(ID)) return false;
+        }
+        return true;
+    }
+
+    /*
+     * Adds a product to the result if it is in the price range and
+     * has a word starting with the prefix.
+     */
+    private static boolean collect(int ID, String prefix, long minPrice, long maxPrice,
+                                   List<Product> result){
+        Product product = Product.getProduct(ID);
+        if (product == null || product.getPrice() < minPrice || product.getPrice() > maxPrice) return false;
+        if (!hasWordStartingWith(product.getName(), prefix)) return false;
+        result.add(product);
+        return true;
+    }
+
+    private static boolean hasWordStartingWith(String name, String prefix){
+        for (int i = 0; i + prefix.length() <= name.length(); i++){
+            if ((i == 0 || !Character.isLetterOrDigit(name.charAt(i - 1)))
+                    && name.regionMatches(true, i, prefix, 0, prefix.length())){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Splits text into lower-case words of letters and digits.
+     */
+    static List<String> tokenize(String text){
+        List<String> words = new ArrayList<>();
+        if (text == null) return words;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++){
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) start = i;
+            else if (!wordChar && start >= 0){
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,145 @@
+package com.ecommerce;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Registry class stores the entities of one kind (customers,
+ * orders) in an ecommerce system and allocates their IDs.
+ * It is safe for concurrent use: IDs come from an atomic counter and
+ * entities live in a concurrent map, so registrations from many
+ * sessions never take a shared lock.
+ * Iteration walks entities in ascending ID order.
+ *
+ * @param <T> type of entity stored.
+ * @author Deni Wisdom Ochiche
+ */
+public final class Registry<T> extends AbstractCollection<T> {
+
+    /*
+     * Last ID handed out by nextID().
+     */
+    private final AtomicInteger lastID = new AtomicInteger();
+    private final ConcurrentHashMap<Integer, T> entities = new ConcurrentHashMap<>();
+
+    /**
+     * Allocates a new unique ID.
+     * @return int: the allocated ID, starting from 1.
+     */
+    public int nextID(){
+        return lastID.incrementAndGet();
+    }
+
+    /**
+     * Marks an ID as allocated, so nextID() never hands it out.
+     * Used when restoring entities whose IDs were allocated by an
+     * earlier run.
+     * @param ID int: an ID in use.
+     */
+    public void reserve(int ID){
+        lastID.accumulateAndGet(ID, Math::max);
+    }
+
+    /**
+     * Retrieves the last ID allocated.
+     * @return int: last ID, 0 if none was allocated.
+     */
+    public int lastID(){
+        return lastID.get();
+    }
+
+    /**
+     * Registers an entity under its ID.
+     * @param ID int: the entity's ID.
+     * @param entity the entity.
+     * @return boolean: true if registered, false if the ID was taken.
+     */
+    public boolean register(int ID, T entity){
+        return entities.putIfAbsent(ID, entity) == null;
+    }
+
+    /**
+     * Removes an entity registered under its ID.
+     * @param ID int: the entity's ID.
+     * @param entity the entity.
+     * @return boolean: true if removed, false if another entity or
+     *         none was registered under the ID.
+     */
+    public boolean unregister(int ID, T entity){
+        return entities.remove(ID, entity);
+    }
+
+    /**
+     * Retrieves an entity.
+     * @param ID int: the entity's ID.
+     * @return entity if registered, else null.
+     */
+    public T get(int ID){
+        return entities.get(ID);
+    }
+
+    /**
+     * Retrieves a page of entities in ascending ID order.
+     * Pass the ID of the last entity of a page to get the next one.
+     * IDs are walked one by one from the cursor, so the cost is the
+     * page size plus the IDs skipped along the way that hold no
+     * entity: IDs allocated to entities that were never registered,
+     * such as failed signups, or unregistered, such as withdrawn
+     * orders. It does not otherwise depend on the registry size.
+     * @param afterID int: cursor, 0 for the first page.
+     * @param limit int: maximum number of entities.
+     * @return {@code List<T>}: the page, empty past the last entity.
+     */
+    public List<T> page(int afterID, int limit){
+        List<T> page = new ArrayList<>(Math.min(limit, 1024));
+        int last = lastID.get();
+        for (int ID = Math.max(afterID, 0) + 1; ID <= last && page.size() < limit; ID++){
+            T entity = entities.get(ID);
+            if (entity != null) page.add(entity);
+        }
+        return page;
+    }
+
+    /**
+     * Retrieves the number of registered entities.
+     * @return int: size.
+     */
+    @Override
+    public int size(){
+        return entities.size();
+    }
+
+    /**
+     * Iterates registered entities in ascending ID order.
+     * @return {@code Iterator<T>}
+     */
+    @Override
+    public Iterator<T> iterator(){
+        return new Iterator<>() {
+            private final int last = lastID.get();
+            private int ID = 0;
+            private T next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && ID < last){
+                    next = entities.get(++ID);
+                }
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                T entity = next;
+                next = null;
+                return entity;
+            }
+        };
+    }
+}
@@ -0,0 +1,200 @@
+package com.ecommerce;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Session class represents a logged-in customer of an ecommerce
+ * system, identified by an opaque random token.
+ * The customer and role are resolved once at login, so authorising a
+ * later request is a single map lookup and an enum check.
+ * <p>
+ * Sessions expire a fixed time after login, and when too many are
+ * open the oldest are dropped first. Since every session lives for
+ * the same time, issue order is also expiry order, and both limits
+ * are enforced by trimming the head of one queue. Logged-out
+ * sessions wait in the queue until they reach its head, or until
+ * they outnumber the open ones and the queue is swept of them, so
+ * the queue stays bounded however often customers log in and out.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class Session {
+
+    /**
+     * What a session may do.
+     */
+    public enum Role {CUSTOMER, ADMIN}
+
+    /**
+     * How long a session lasts after login.
+     */
+    public static final Duration TTL = Duration.ofMinutes(30);
+
+    /**
+     * Most sessions open at once.
+     */
+    public static final int MAX_SESSIONS = 100_000;
+
+    private static final String ADMIN_USERNAME = "admin";
+    private static final int TOKEN_BYTES = 16;
+
+    /*
+     * Logged-out sessions tolerated in the issue queue beyond as many
+     * as are open, before it is swept.
+     */
+    private static final int SWEEP_SLACK = 1024;
+
+    /*
+     * Open sessions by token, and the same sessions in issue order.
+     * The queue may still hold sessions that have logged out; they
+     * are skipped when they reach its head.
+     */
+    private static final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private static final Queue<Session> issued = new ConcurrentLinkedQueue<>();
+
+    /*
+     * Length of the issue queue, kept apart since sizing the queue
+     * walks it; reset to the exact length after each sweep. One
+     * thread sweeps at a time.
+     */
+    private static final AtomicInteger queued = new AtomicInteger();
+    private static final AtomicBoolean sweeping = new AtomicBoolean();
+    private static final SecureRandom random = new SecureRandom();
+    private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+    private final String token;
+    private final Customer customer;
+    private final Role role;
+    private final long expiresAt;
+
+    private Session(String token, Customer customer, Role role, long expiresAt){
+        this.token = token;
+        this.customer = customer;
+        this.role = role;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Logs a customer in.
+     * @param username String: customer's username.
+     * @return {@code Session}: new session, or null if no customer
+     *         has that username.
+     */
+    public static Session login(String username){
+        Customer customer = Customer.getCustomer(username);
+        if (customer == null) return null;
+        Role role = customer.getUsername().equals(ADMIN_USERNAME) ? Role.ADMIN : Role.CUSTOMER;
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        Session session = new Session(encoder.encodeToString(bytes), customer, role,
+                System.nanoTime() + TTL.toNanos());
+        sessions.put(session.token, session);
+        issued.add(session);
+        queued.incrementAndGet();
+        evict();
+        return session;
+    }
+
+    /**
+     * Retrieves an open session.
+     * @param token String: session token.
+     * @return {@code Session}: the session, or null if the token is
+     *         unknown, logged out or expired.
+     */
+    public static Session get(String token){
+        if (token == null) return null;
+        Session session = sessions.get(token);
+        if (session == null) return null;
+        if (session.isExpired(System.nanoTime())){
+            sessions.remove(token, session);
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * Ends a session.
+     * @param token String: session token.
+     */
+    public static void logout(String token){
+        if (token != null && sessions.remove(token) != null) sweepIfStale();
+    }
+
+    /**
+     * Retrieves the session's token.
+     * @return String: token.
+     */
+    public String getToken(){
+        return token;
+    }
+
+    /**
+     * Retrieves the logged-in customer.
+     * @return {@code Customer}
+     */
+    public Customer getCustomer(){
+        return customer;
+    }
+
+    /**
+     * Retrieves the session's role.
+     * @return {@code Role}
+     */
+    public Role getRole(){
+        return role;
+    }
+
+    /**
+     * Checks whether the session belongs to the administrator.
+     * @return boolean: true if the role is {@code ADMIN}.
+     */
+    public boolean isAdmin(){
+        return role == Role.ADMIN;
+    }
+
+    private boolean isExpired(long now){
+        return now - expiresAt >= 0;
+    }
+
+    /*
+     * Drops sessions from the head of the issue queue while they
+     * have expired or there are too many open.
+     */
+    private static void evict(){
+        long now = System.nanoTime();
+        Session oldest;
+        while ((oldest = issued.peek()) != null
+                && (oldest.isExpired(now) || sessions.size() > MAX_SESSIONS
+                    || sessions.get(oldest.token) != oldest)){
+            if (issued.remove(oldest)){
+                queued.decrementAndGet();
+                sessions.remove(oldest.token, oldest);
+            }
+        }
+        sweepIfStale();
+    }
+
+    /*
+     * Removes logged-out sessions from anywhere in the issue queue
+     * once they outnumber the open ones, so a sweep walking the
+     * queue comes at most once per as many logouts as it removes.
+     */
+    private static void sweepIfStale(){
+        if (queued.get() <= 2 * sessions.size() + SWEEP_SLACK) return;
+        if (!sweeping.compareAndSet(false, true)) return;
+        try {
+            issued.removeIf(session -> sessions.get(session.token) != session);
+            queued.set(issued.size());
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
@@ -0,0 +1,589 @@
+package com.ecommerce.http;
+
+import com.ecommerce.Customer;
+import com.ecommerce.Product;
+import com.ecommerce.Session;
+import com.ecommerce.metrics.Metrics;
+import com.ecommerce.metrics.Timer;
+import com.ecommerce.orders.CartItem;
+import com.ecommerce.orders.Order;
+import com.ecommerce.orders.OrderPipeline;
+import com.ecommerce.orders.SalesAnalytics;
+import com.ecommerce.render.Json;
+import com.ecommerce.render.ReceiptWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The StorefrontServer class serves the ecommerce system as a
+ * JSON-over-HTTP API on the JDK's built-in HTTP server.
+ * Every request runs on its own virtual thread, so a blocked request
+ * (for instance one waiting on a durable write) costs no platform
+ * thread and many thousands of sessions can be open at once.
+ * Checkouts go through an {@link OrderPipeline}, so concurrent orders
+ * are persisted in batches.
+ * <p>
+ * Routes, all but the metrics answering JSON:
+ * <pre>
+ * POST /signup               {"username", "name"}
+ * POST /login                {"username"}
+ * POST /logout
+ * GET  /products             ?after=&amp;limit=
+ * GET  /products/search      ?q=&amp;min=&amp;max=&amp;limit=   (prices in cents)
+ * GET  /products/complete    ?prefix=&amp;limit=
+ * GET  /cart
+ * POST /cart/add             {"productID", "quantity"}
+ * POST /cart/remove          {"productID"}
+ * POST /checkout             {"address"}, optional Idempotency-Key header
+ * GET  /admin/orders         ?after=&amp;limit= or ?customer=&amp;status=&amp;from=&amp;to=&amp;after=&amp;limit=
+ * POST /admin/orders/status  {"orderID", "status"}
+ * POST /admin/orders/status/bulk {"status", "current", "from", "to", "customer"}
+ * POST /admin/prices         {"productID": cents, ...}
+ * GET  /admin/analytics      ?top=&amp;minutes=&amp;hours=
+ * GET  /metrics              Prometheus text exposition format
+ * </pre>
+ * Every route is timed. Requests other than signup, login, the
+ * catalog and the metrics carry the token
+ * returned by login in an {@code Authorization: Bearer} header.
+ * A checkout retried with the {@code Idempotency-Key} of an earlier
+ * one answers with the order that one placed.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class StorefrontServer implements Closeable {
+
+    /**
+     * Prefix of the Authorization header carrying a session token.
+     */
+    public static final String BEARER = "Bearer ";
+
+    private static final int DEFAULT_PAGE = 100;
+    private static final int MAX_PAGE = 1000;
+    private static final int MAX_BODY = 64 * 1024;
+    private static final int BACKLOG = 4096;
+    private static final int MAX_IDEMPOTENCY_KEY = 255;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final OrderPipeline pipeline = new OrderPipeline();
+    private final Map<String, Route> routes = new HashMap<>();
+    private final Map<String, Timer> timers = new HashMap<>();
+
+    /*
+     * Handles one route.
+     */
+    @FunctionalInterface
+    private interface Route {
+        Reply handle(Request request) throws IOException;
+    }
+
+    /*
+     * A parsed request: JSON body members and query parameters.
+     */
+    private record Request(HttpExchange exchange, Map<String, String> body,
+                           Map<String, String> query) {
+    }
+
+    /*
+     * A response status, body and content type, JSON unless given.
+     */
+    private record Reply(int status, CharSequence body, String contentType) {
+        Reply(int status, CharSequence body){
+            this(status, body, "application/json; charset=utf-8");
+        }
+    }
+
+    /*
+     * Ends a request with an error status.
+     */
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        HttpError(int status, String message){
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * StorefrontServer constructor. The server does not accept
+     * requests until started.
+     * @param address {@code InetSocketAddress}: address to listen on,
+     *                port 0 for any free port.
+     * @throws IOException if the address cannot be bound.
+     */
+    public StorefrontServer(InetSocketAddress address) throws IOException {
+        server = HttpServer.create(address, BACKLOG);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::dispatch);
+        routes.put("POST /signup", this::signup);
+        routes.put("POST /login", this::login);
+        routes.put("POST /logout", this::logout);
+        routes.put("GET /products", this::products);
+        routes.put("GET /products/search", this::searchProducts);
+        routes.put("GET /products/complete", this::completeProductName);
+        routes.put("GET /cart", this::cart);
+        routes.put("POST /cart/add", this::addToCart);
+        routes.put("POST /cart/remove", this::removeFromCart);
+        routes.put("POST /checkout", this::checkout);
+        routes.put("GET /admin/orders", this::orders);
+        routes.put("POST /admin/orders/status", this::changeOrderStatus);
+        routes.put("POST /admin/orders/status/bulk", this::changeOrderStatuses);
+        routes.put("POST /admin/prices", this::updatePrices);
+        routes.put("GET /admin/analytics", this::analytics);
+        routes.put("GET /metrics", this::metrics);
+        for (String route : routes.keySet()){
+            timers.put(route, Metrics.timer("ecommerce_http_request_seconds",
+                    "Latency of storefront API requests.", "route", route));
+        }
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start(){
+        server.start();
+    }
+
+    /**
+     * Retrieves the port the server listens on.
+     * @return int: port.
+     */
+    public int getPort(){
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, letting requests in progress finish.
+     */
+    @Override
+    public void close(){
+        server.stop(1);
+        executor.close();
+        pipeline.close();
+    }
+
+    private Reply signup(Request request){
+        String username = require(request.body(), "username");
+        String name = require(request.body(), "name");
+        if (username.length() < 3 || name.length() < 3){
+            throw new IllegalArgumentException("Username and name must be more than 2 characters");
+        }
+        Customer customer = new Customer(username, name);
+        if (!Customer.registerCustomer(customer)){
+            throw new HttpError(409, "Username already exists");
+        }
+        return new Reply(201, customerJson(new StringBuilder(), customer));
+    }
+
+    private Reply login(Request request){
+        Session session = Session.login(require(request.body(), "username"));
+        if (session == null) throw new HttpError(404, "Username doesn't exist");
+        StringBuilder sb = new StringBuilder().append('{');
+        Json.string(Json.name(sb, "token"), session.getToken());
+        Json.string(Json.name(sb, "role"), session.getRole().name());
+        customerJson(Json.name(sb, "customer"), session.getCustomer());
+        return new Reply(200, sb.append('}'));
+    }
+
+    private Reply logout(Request request){
+        Session.logout(session(request).getToken());
+        return new Reply(200, "{}");
+    }
+
+    private Reply products(Request request){
+        int after = intParam(request.query(), "after", 0);
+        List<Product> page = Product.listProducts(after, limit(request.query()));
+        StringBuilder sb = productsJson(page);
+        nextCursor(sb, page.isEmpty() ? 0 : page.get(page.size() - 1).getProductID());
+        return new Reply(200, sb.append('}'));
+    }
+
+    private Reply searchProducts(Request request){
+        Map<String, String> query = request.query();
+        List<Product> found = Product.searchProducts(query.getOrDefault("q", ""),
+                longParam(query, "min", 0), longParam(query, "max", Long.MAX_VALUE), limit(query));
+        return new Reply(200, productsJson(found).append('}'));
+    }
+
+    private Reply completeProductName(Request request){
+        List<String> words = Product.completeProductName(require(request.query(), "prefix"),
+                limit(request.query()));
+        StringBuilder sb = new StringBuilder(32 + words.size() * 16).append('{');
+        Json.name(sb, "words").append('[');
+        for (String word : words){
+            Json.string(Json.element(sb), word);
+        }
+        return new Reply(200, sb.append("]}"));
+    }
+
+    private Reply cart(Request request){
+        return new Reply(200, cartJson(customer(request)));
+    }
+
+    private Reply addToCart(Request request){
+        Customer customer = customer(request);
+        int productID = intParam(request.body(), "productID", -1);
+        int quantity = intParam(request.body(), "quantity", 1);
+        if (quantity < 1 || quantity > CartItem.MAX_QUANTITY){
+            throw new IllegalArgumentException("'quantity' must be from 1 to " + CartItem.MAX_QUANTITY);
+        }
+        if (!customer.addToCart(productID, quantity)){
+            throw new HttpError(404, "Product with that ID is not available");
+        }
+        return new Reply(200, cartJson(customer));
+    }
+
+    private Reply removeFromCart(Request request){
+        Customer customer = customer(request);
+        customer.removeFromCart(intParam(request.body(), "productID", -1));
+        return new Reply(200, cartJson(customer));
+    }
+
+    private Reply checkout(Request request){
+        Customer customer = customer(request);
+        String address = request.body().get("address");
+        if (address != null && !address.isBlank() && !address.equals(customer.getAddress())){
+            customer.setAddress(address);
+        }
+        if (customer.getAddress().isBlank()){
+            throw new IllegalArgumentException("Address is required");
+        }
+        String key = request.exchange().getRequestHeaders().getFirst("Idempotency-Key");
+        if (key != null && (key.isEmpty() || key.length() > MAX_IDEMPOTENCY_KEY)){
+            throw new IllegalArgumentException("Invalid Idempotency-Key");
+        }
+        Order order;
+        try {
+            order = (key == null ? customer.placeOrder(pipeline)
+                    : customer.placeOrder(pipeline, key)).join();
+        } catch (IllegalStateException e){
+            throw new HttpError(409, e.getMessage());
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new HttpError(503, "Checkout interrupted");
+        }
+        if (order == null) throw new HttpError(409, "Cart is empty");
+        return new Reply(201, ReceiptWriter.appendJson(new StringBuilder(), order));
+    }
+
+    private Reply orders(Request request){
+        admin(request);
+        Map<String, String> query = request.query();
+        List<Order> orders;
+        if (query.containsKey("customer") || query.containsKey("status")
+                || query.containsKey("from") || query.containsKey("to")){
+            String status = query.get("status");
+            orders = Order.findOrders(intParam(query, "customer", Order.ANY_CUSTOMER),
+                    status == null ? null : parseStatus(status),
+                    longParam(query, "from", Long.MIN_VALUE), longParam(query, "to", Long.MAX_VALUE),
+                    intParam(query, "after", 0), limit(query));
+        }
+        else {
+            orders = Order.listOrders(intParam(query, "after", 0), limit(query));
+        }
+        int cursor = orders.isEmpty() ? 0 : orders.get(orders.size() - 1).getOrderID();
+        StringBuilder sb = new StringBuilder(64 + orders.size() * 160).append('{');
+        Json.name(sb, "orders").append('[');
+        for (Order order : orders){
+            ReceiptWriter.appendJson(Json.element(sb), order);
+        }
+        sb.append(']');
+        if (cursor != 0) nextCursor(sb, cursor);
+        return new Reply(200, sb.append('}'));
+    }
+
+    private Reply changeOrderStatus(Request request){
+        admin(request);
+        Order order = Order.getOrder(intParam(request.body(), "orderID", -1));
+        if (order == null) throw new HttpError(404, "Order with that ID is not available");
+        try {
+            order.setOrderStatus(require(request.body(), "status"));
+        } catch (IllegalStateException e){
+            throw new HttpError(409, e.getMessage());
+        }
+        return new Reply(200, ReceiptWriter.appendJson(new StringBuilder(), order));
+    }
+
+    /*
+     * Moves every order matching a filter to a status, e.g. all
+     * pending orders of a day to delivered, and answers the number
+     * changed and unchanged and the IDs of orders left as they were
+     * because their status may not move to it.
+     */
+    private Reply changeOrderStatuses(Request request){
+        admin(request);
+        Map<String, String> body = request.body();
+        Order.Status status = parseStatus(require(body, "status"));
+        String current = body.get("current");
+        List<Order> orders = Order.findOrders(intParam(body, "customer", Order.ANY_CUSTOMER),
+                current == null ? null : parseStatus(current),
+                longParam(body, "from", Long.MIN_VALUE), longParam(body, "to", Long.MAX_VALUE));
+        Order.StatusChange[] changes = Order.changeStatus(orders, status);
+        int[] counts = new int[Order.StatusChange.values().length];
+        StringBuilder sb = new StringBuilder(64).append('{');
+        Json.name(sb, "rejected").append('[');
+        for (int i = 0; i < changes.length; i++){
+            counts[changes[i].ordinal()]++;
+            if (changes[i] == Order.StatusChange.REJECTED) Json.element(sb).append(orders.get(i).getOrderID());
+        }
+        sb.append(']');
+        Json.name(sb, "changed").append(counts[Order.StatusChange.CHANGED.ordinal()]);
+        Json.name(sb, "unchanged").append(counts[Order.StatusChange.UNCHANGED.ordinal()]);
+        return new Reply(200, sb.append('}'));
+    }
+
+    /*
+     * Takes new prices in cents keyed by product ID, e.g.
+     * {"3": 1999, "7": 250}, and applies all of them at once.
+     */
+    private Reply updatePrices(Request request){
+        admin(request);
+        Map<String, String> body = request.body();
+        if (body.isEmpty()) throw new IllegalArgumentException("No prices given");
+        int[] IDs = new int[body.size()];
+        long[] prices = new long[body.size()];
+        int i = 0;
+        for (String key : body.keySet()){
+            try {
+                IDs[i] = Integer.parseInt(key);
+            } catch (NumberFormatException e){
+                throw new IllegalArgumentException("Product IDs must be whole numbers");
+            }
+            if (Product.getProduct(IDs[i]) == null){
+                throw new HttpError(404, "Product with ID " + key + " is not available");
+            }
+            prices[i++] = longParam(body, key, 0);
+        }
+        int version = Product.updatePrices(IDs, prices);
+        StringBuilder sb = new StringBuilder(48).append('{');
+        Json.name(sb, "version").append(version);
+        Json.name(sb, "updated").append(IDs.length);
+        return new Reply(200, sb.append('}'));
+    }
+
+    /*
+     * Reads the precomputed sales figures: revenue, orders per
+     * status, best sellers and the latest minute and hour windows.
+     */
+    private Reply analytics(Request request){
+        admin(request);
+        Map<String, String> query = request.query();
+        SalesAnalytics sales = Order.getSalesAnalytics();
+        long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder(4096).append('{');
+        Json.name(sb, "revenueCents").append(sales.getRevenue());
+        Json.name(sb, "orders").append('{');
+        for (Order.Status status : Order.Status.values()){
+            Json.name(sb, status.name()).append(sales.getOrderCount(status));
+        }
+        sb.append('}');
+        Json.name(sb, "topProducts").append('[');
+        for (SalesAnalytics.ProductRevenue top : sales.getTopProducts(intParam(query, "top", 10))){
+            Json.element(sb).append('{');
+            Json.name(sb, "productID").append(top.productID());
+            Json.name(sb, "revenueCents").append(top.revenue());
+            sb.append('}');
+        }
+        sb.append(']');
+        windowsJson(Json.name(sb, "minutes"), sales.getMinutes(now, intParam(query, "minutes", 60)));
+        windowsJson(Json.name(sb, "hours"), sales.getHours(now, intParam(query, "hours", 24)));
+        return new Reply(200, sb.append('}'));
+    }
+
+    private Reply metrics(Request request){
+        return new Reply(200, Metrics.write(new StringBuilder(4096)), Metrics.CONTENT_TYPE);
+    }
+
+    /*
+     * Runs the route matching a request and sends its reply.
+     */
+    private void dispatch(HttpExchange exchange) throws IOException {
+        try (exchange){
+            Reply reply;
+            String name = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+            Timer timer = timers.get(name);
+            long start = timer == null ? 0 : timer.start();
+            try {
+                String path = exchange.getRequestURI().getPath();
+                Route route = routes.get(name);
+                if (route == null){
+                    boolean known = routes.keySet().stream().anyMatch(key -> key.endsWith(" " + path));
+                    throw new HttpError(known ? 405 : 404, known ? "Method not allowed" : "Not found");
+                }
+                reply = route.handle(new Request(exchange, body(exchange),
+                        query(exchange.getRequestURI().getRawQuery())));
+            } catch (HttpError e){
+                reply = error(e.status, e.getMessage());
+            } catch (IllegalArgumentException | IllegalStateException e){
+                reply = error(400, e.getMessage());
+            } catch (RuntimeException e){
+                reply = error(500, "Internal error");
+            }
+            byte[] bytes = reply.body().toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", reply.contentType());
+            exchange.sendResponseHeaders(reply.status(), bytes.length);
+            try (OutputStream out = exchange.getResponseBody()){
+                out.write(bytes);
+            }
+            if (timer != null) timer.stop(start);
+        }
+    }
+
+    private static Reply error(int status, String message){
+        StringBuilder sb = new StringBuilder().append('{');
+        Json.string(Json.name(sb, "error"), message);
+        return new Reply(status, sb.append('}'));
+    }
+
+    private static Session session(Request request){
+        String authorization = request.exchange().getRequestHeaders().getFirst("Authorization");
+        Session session = authorization == null || !authorization.startsWith(BEARER) ? null
+                : Session.get(authorization.substring(BEARER.length()));
+        if (session == null) throw new HttpError(401, "Login required");
+        return session;
+    }
+
+    private static Customer customer(Request request){
+        return session(request).getCustomer();
+    }
+
+    private static void admin(Request request){
+        if (!session(request).isAdmin()){
+            throw new HttpError(403, "Only admin can make such request");
+        }
+    }
+
+    private static Order.Status parseStatus(String status){
+        return Order.Status.parse(status);
+    }
+
+    private static StringBuilder customerJson(StringBuilder sb, Customer customer){
+        sb.append('{');
+        Json.name(sb, "customerID").append(customer.getCustomerID());
+        Json.string(Json.name(sb, "username"), customer.getUsername());
+        Json.string(Json.name(sb, "name"), customer.getName());
+        Json.string(Json.name(sb, "address"), customer.getAddress());
+        return sb.append('}');
+    }
+
+    /*
+     * Opens an object with a products array, left open for
+     * further members.
+     */
+    private static StringBuilder productsJson(List<Product> products){
+        StringBuilder sb = new StringBuilder(64 + products.size() * 64).append('{');
+        Json.name(sb, "products").append('[');
+        for (Product product : products){
+            Json.element(sb).append('{');
+            Json.name(sb, "productID").append(product.getProductID());
+            Json.string(Json.name(sb, "name"), product.getName());
+            Json.name(sb, "priceCents").append(product.getPrice());
+            if (product.getStock() != Product.UNLIMITED){
+                Json.name(sb, "stock").append(product.getStock());
+            }
+            sb.append('}');
+        }
+        return sb.append(']');
+    }
+
+    private static StringBuilder cartJson(Customer customer){
+        List<CartItem> items = customer.getShoppingCart();
+        long total = 0;
+        StringBuilder sb = new StringBuilder(64 + items.size() * 96).append('{');
+        Json.name(sb, "items").append('[');
+        for (CartItem item : items){
+            Json.element(sb).append('{');
+            Json.name(sb, "productID").append(item.getProduct().getProductID());
+            Json.string(Json.name(sb, "name"), item.getProduct().getName());
+            Json.name(sb, "quantity").append(item.getQuantity());
+            Json.name(sb, "priceCents").append(item.getPrice());
+            sb.append('}');
+            total += item.getPrice();
+        }
+        sb.append(']');
+        Json.name(sb, "totalCents").append(total);
+        return sb.append('}');
+    }
+
+    private static void windowsJson(StringBuilder sb, List<SalesAnalytics.Window> windows){
+        sb.append('[');
+        for (SalesAnalytics.Window window : windows){
+            Json.element(sb).append('{');
+            Json.name(sb, "start").append(window.start());
+            Json.name(sb, "orders").append(window.orders());
+            Json.name(sb, "revenueCents").append(window.revenue());
+            sb.append('}');
+        }
+        sb.append(']');
+    }
+
+    private static void nextCursor(StringBuilder sb, int cursor){
+        Json.name(sb, "next").append(cursor);
+    }
+
+    private static Map<String, String> body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()){
+            byte[] bytes = in.readNBytes(MAX_BODY + 1);
+            if (bytes.length > MAX_BODY) throw new HttpError(413, "Request body too large");
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery){
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) return query;
+        for (String pair : rawQuery.split("&")){
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static String require(Map<String, String> members, String name){
+        String value = members.get(name);
+        if (value == null || value.isBlank()) throw new IllegalArgumentException("Missing '" + name + "'");
+        return value;
+    }
+
+    private static int limit(Map<String, String> query){
+        return Math.max(1, Math.min(intParam(query, "limit", DEFAULT_PAGE), MAX_PAGE));
+    }
+
+    private static int intParam(Map<String, String> members, String name, int defaultValue){
+        String value = members.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e){
+            throw new IllegalArgumentException("'" + name + "' must be a whole number");
+        }
+    }
+
+    private static long longParam(Map<String, String> members, String name, long defaultValue){
+        String value = members.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e){
+            throw new IllegalArgumentException("'" + name + "' must be a whole number");
+        }
+    }
+}
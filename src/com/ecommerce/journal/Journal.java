@@ -0,0 +1,378 @@
+package com.ecommerce.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * The Journal class is a durable, append-only log of records in a
+ * local file.
+ * Each record is framed as {@code [int length][byte type][int crc]}
+ * followed by {@code length} payload bytes; the CRC32C covers the type
+ * and payload, so a torn write at the tail is detected and dropped on
+ * the next open.
+ * Appends are group committed: concurrent callers copy their record
+ * into a shared buffer and one of them writes and fsyncs the whole
+ * batch on behalf of all, so the cost of {@code force} is shared.
+ * Callers wait for a flush on a lock rather than a monitor, so a
+ * virtual thread waiting on the disk does not pin its carrier.
+ * On open the existing file is replayed through memory-mapped reads.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class Journal implements Closeable {
+
+    /**
+     * Receives records replayed from a journal.
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * Applies one record.
+         * @param type byte: record type.
+         * @param payload {@code ByteBuffer}: record payload, read-only.
+         * @throws IOException if the record cannot be applied.
+         */
+        void apply(byte type, ByteBuffer payload) throws IOException;
+    }
+
+    /*
+     * Size of a record header: length, type and checksum.
+     */
+    private static final int HEADER = 9;
+
+    /*
+     * Largest region of the file mapped at once during replay.
+     */
+    private static final long MAX_WINDOW = 1L << 30;
+    private static final int INITIAL_BUFFER = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private final CRC32C crc = new CRC32C();
+
+    /*
+     * Records appended but not yet written, and the spare
+     * buffer swapped in while a batch is being flushed.
+     */
+    private ByteBuffer pending = ByteBuffer.allocateDirect(INITIAL_BUFFER);
+    private ByteBuffer spare = ByteBuffer.allocateDirect(INITIAL_BUFFER);
+
+    /*
+     * Sequence numbers of the last appended and the last
+     * durable record.
+     */
+    private long appended;
+    private long durable;
+    private long bytes;
+    private boolean flushing;
+    private boolean closed;
+    private IOException failure;
+
+    private Journal(FileChannel channel, long bytes){
+        this.channel = channel;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Opens a journal, creating the file if needed. Existing records
+     * are replayed through the handler before this method returns; a
+     * torn record at the tail is truncated.
+     * @param file {@code Path}: journal file.
+     * @param handler {@code Handler}: receives replayed records.
+     * @return {@code Journal} positioned for appends.
+     * @throws IOException if the file cannot be read or a record
+     *                     cannot be applied.
+     */
+    public static Journal open(Path file, Handler handler) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long end = replay(channel, handler);
+            if (end < channel.size()){
+                channel.truncate(end);
+                channel.force(true);
+            }
+            channel.position(end);
+            return new Journal(channel, end);
+        } catch (IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads every intact record of a journal file without opening it
+     * for appends.
+     * @param file {@code Path}: journal file.
+     * @param handler {@code Handler}: receives the records.
+     * @throws IOException if the file cannot be read or a record
+     *                     cannot be applied.
+     */
+    public static void read(Path file, Handler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            replay(channel, handler);
+        }
+    }
+
+    /**
+     * Appends a record and waits until it is durable on disk.
+     * @param type byte: record type.
+     * @param payload {@code ByteBuffer}: record payload, from its
+     *                position to its limit.
+     * @throws IOException if the journal is closed or the write fails.
+     */
+    public void append(byte type, ByteBuffer payload) throws IOException {
+        sync(write(type, payload));
+    }
+
+    /**
+     * Buffers a record without waiting for it to reach the disk.
+     * Records become durable in the order they were written.
+     * @param type byte: record type.
+     * @param payload {@code ByteBuffer}: record payload, from its
+     *                position to its limit.
+     * @return long: sequence number to pass to {@link #sync}.
+     * @throws IOException if the journal is closed or has failed.
+     */
+    public long write(byte type, ByteBuffer payload) throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            ensureCapacity(HEADER + payload.remaining());
+            bytes += frame(pending, type, payload, crc);
+            return ++appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until a written record is durable on disk.
+     * @param sequence long: sequence number returned by {@link #write}.
+     * @throws IOException if the write fails.
+     */
+    public void sync(long sequence) throws IOException {
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Retrieves the size of the journal, including records written
+     * but not yet durable.
+     * @return long: size in bytes.
+     */
+    public long size(){
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frames a record into a buffer in journal format.
+     * @param buffer {@code ByteBuffer} with room for the record.
+     * @param type byte: record type.
+     * @param payload {@code ByteBuffer}: record payload, left unread.
+     * @param crc {@code CRC32C} scratch checksum.
+     * @return int: number of bytes written.
+     */
+    static int frame(ByteBuffer buffer, byte type, ByteBuffer payload, CRC32C crc){
+        int length = payload.remaining();
+        crc.reset();
+        crc.update(type);
+        crc.update(payload.duplicate());
+        buffer.putInt(length).put(type).putInt((int) crc.getValue()).put(payload.duplicate());
+        return HEADER + length;
+    }
+
+    /**
+     * Retrieves the framed size of a record.
+     * @param payload {@code ByteBuffer}: record payload.
+     * @return int: size in bytes.
+     */
+    static int framedSize(ByteBuffer payload){
+        return HEADER + payload.remaining();
+    }
+
+    /**
+     * Flushes outstanding records and closes the file.
+     * @throws IOException if the final flush or close fails.
+     */
+    @Override
+    public void close() throws IOException {
+        long sequence;
+        lock.lock();
+        try {
+            if (closed) return;
+            sequence = appended;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            awaitDurable(sequence);
+        } finally {
+            lock.lock();
+            try {
+                closed = true;
+            } finally {
+                lock.unlock();
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes a string as a length-prefixed UTF-8 sequence.
+     * @param buffer {@code ByteBuffer} to write to.
+     * @param value String: value to write.
+     */
+    public static void putString(ByteBuffer buffer, String value){
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #putString}.
+     * @param buffer {@code ByteBuffer} to read from.
+     * @return String: value read.
+     */
+    public static String getString(ByteBuffer buffer){
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Retrieves the number of bytes a string takes when written by
+     * {@link #putString}.
+     * @param value String: value.
+     * @return int: encoded size.
+     */
+    public static int sizeOf(String value){
+        int size = 0;
+        for (int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            if (c < 0x80) size += 1;
+            else if (c < 0x800) size += 2;
+            else if (Character.isHighSurrogate(c)) { size += 4; i++; }
+            else size += 3;
+        }
+        return Integer.BYTES + size;
+    }
+
+    /*
+     * Waits until the record with the given sequence is durable,
+     * flushing the pending batch itself when no other thread is.
+     */
+    private void awaitDurable(long sequence) throws IOException {
+        ByteBuffer batch;
+        long batchEnd;
+        lock.lock();
+        try {
+            while (durable < sequence && flushing){
+                try {
+                    flushed.await();
+                } catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for journal flush");
+                }
+            }
+            if (durable >= sequence) return;
+            if (failure != null) throw new IOException("Journal write failed", failure);
+            flushing = true;
+            batch = pending;
+            pending = spare;
+            batchEnd = appended;
+        } finally {
+            lock.unlock();
+        }
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()){
+                channel.write(batch);
+            }
+            channel.force(false);
+        } catch (IOException e){
+            error = e;
+        } finally {
+            lock.lock();
+            try {
+                batch.clear();
+                spare = batch;
+                if (error == null) durable = batchEnd;
+                else failure = error;
+                flushing = false;
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (error != null) throw error;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) throw new IOException("Journal is closed");
+        if (failure != null) throw new IOException("Journal write failed", failure);
+    }
+
+    private void ensureCapacity(int bytes){
+        if (pending.remaining() >= bytes) return;
+        int capacity = pending.capacity();
+        while (capacity - pending.position() < bytes){
+            capacity *= 2;
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        pending.flip();
+        grown.put(pending);
+        pending = grown;
+    }
+
+    /*
+     * Replays records from a channel, returning the offset just past
+     * the last intact record.
+     */
+    private static long replay(FileChannel channel, Handler handler) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        CRC32C crc = new CRC32C();
+        while (position < size){
+            long window = Math.min(size - position, MAX_WINDOW);
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+            int consumed = 0;
+            while (map.remaining() >= HEADER){
+                int start = map.position();
+                int length = map.getInt();
+                byte type = map.get();
+                int checksum = map.getInt();
+                if (length < 0 || length > map.remaining()) break;
+                ByteBuffer payload = map.slice(map.position(), length);
+                crc.reset();
+                crc.update(type);
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) return position + start;
+                handler.apply(type, payload.asReadOnlyBuffer());
+                map.position(map.position() + length);
+                consumed = map.position();
+            }
+            if (consumed == 0 || position + window == size){
+                return position + consumed;
+            }
+            position += consumed;
+        }
+        return position;
+    }
+}
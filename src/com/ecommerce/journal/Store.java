@@ -0,0 +1,313 @@
+package com.ecommerce.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * The Store class keeps durable state in a directory as a compact
+ * snapshot plus a tail of journal segments written since it.
+ * <p>
+ * Changes are appended to the current segment, named
+ * {@code journal-<n>.log}. Taking a snapshot first rotates to a new
+ * segment, then writes the full state to {@code snapshot.bin} in the
+ * background while appends continue; segments older than the rotation
+ * are deleted once the snapshot is in place. Recovery loads the
+ * snapshot and replays only the segments after it, so restart time
+ * follows the size of the tail rather than the whole history.
+ * <p>
+ * The snapshot is fuzzy: entities changed during the scan may appear
+ * in it with either their old or new state. Handlers must therefore
+ * apply records idempotently, and callers must change state in memory
+ * before appending its record, so every change missing from the
+ * snapshot is in the tail.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class Store implements Closeable {
+
+    /**
+     * Writes the full state into a snapshot.
+     */
+    @FunctionalInterface
+    public interface Snapshotter {
+
+        /**
+         * Writes records that rebuild the current state.
+         * @param sink {@code Sink}: destination of the records.
+         * @throws IOException if writing fails.
+         */
+        void write(Sink sink) throws IOException;
+    }
+
+    /**
+     * Destination of snapshot records.
+     */
+    @FunctionalInterface
+    public interface Sink {
+
+        /**
+         * Writes one record.
+         * @param type byte: record type, greater than zero.
+         * @param payload {@code ByteBuffer}: record payload.
+         * @throws IOException if writing fails.
+         */
+        void record(byte type, ByteBuffer payload) throws IOException;
+    }
+
+    /*
+     * Record type reserved for the snapshot header, which holds
+     * the number of the first segment to replay after it.
+     */
+    private static final byte HEADER = 0;
+    private static final String SNAPSHOT = "snapshot.bin";
+    private static final String SNAPSHOT_TEMP = "snapshot.tmp";
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    private final Path directory;
+
+    /*
+     * Guards the current segment: appends share it, rotation
+     * takes it exclusively.
+     */
+    private final ReadWriteLock rotation = new ReentrantReadWriteLock();
+    private final Object snapshotLock = new Object();
+    private Journal current;
+    private long segment;
+    private ScheduledExecutorService scheduler;
+    private volatile long lastSnapshot = System.nanoTime();
+
+    private Store(Path directory, Journal current, long segment){
+        this.directory = directory;
+        this.current = current;
+        this.segment = segment;
+    }
+
+    /**
+     * Opens a store, creating the directory if needed, and replays
+     * the snapshot and journal tail through the handler.
+     * @param directory {@code Path}: store directory.
+     * @param handler {@code Journal.Handler}: applies recovered records.
+     * @return {@code Store} ready for appends.
+     * @throws IOException if recovery fails.
+     */
+    public static Store open(Path directory, Journal.Handler handler) throws IOException {
+        Files.createDirectories(directory);
+        long[] first = {1};
+        Path snapshot = directory.resolve(SNAPSHOT);
+        if (Files.exists(snapshot)){
+            Journal.read(snapshot, (type, payload) -> {
+                if (type == HEADER) first[0] = payload.getLong();
+                else handler.apply(type, payload);
+            });
+        }
+        List<Long> tail = new ArrayList<>();
+        for (long number : segments(directory)){
+            if (number < first[0]) Files.delete(segmentPath(directory, number));
+            else tail.add(number);
+        }
+        for (int i = 0; i < tail.size() - 1; i++){
+            Journal.read(segmentPath(directory, tail.get(i)), handler);
+        }
+        long last = tail.isEmpty() ? first[0] : tail.get(tail.size() - 1);
+        Journal journal = Journal.open(segmentPath(directory, last), handler);
+        return new Store(directory, journal, last);
+    }
+
+    /**
+     * Appends a record to the current segment and waits until it is
+     * durable. Appends continue while a snapshot is being written.
+     * @param type byte: record type, greater than zero.
+     * @param payload {@code ByteBuffer}: record payload.
+     * @throws IOException if the write fails.
+     */
+    public void append(byte type, ByteBuffer payload) throws IOException {
+        if (type == HEADER) throw new IllegalArgumentException("Reserved record type: " + type);
+        Journal journal;
+        long sequence;
+        rotation.readLock().lock();
+        try {
+            journal = current;
+            sequence = journal.write(type, payload);
+        } finally {
+            rotation.readLock().unlock();
+        }
+        journal.sync(sequence);
+    }
+
+    /**
+     * Appends records of one type and waits once until all of them
+     * are durable, so a batch costs a single sync.
+     * @param type byte: record type, greater than zero.
+     * @param payloads {@code List<ByteBuffer>}: record payloads,
+     *                 written in order.
+     * @throws IOException if a write fails.
+     */
+    public void append(byte type, List<ByteBuffer> payloads) throws IOException {
+        if (type == HEADER) throw new IllegalArgumentException("Reserved record type: " + type);
+        if (payloads.isEmpty()) return;
+        Journal journal;
+        long sequence = 0;
+        rotation.readLock().lock();
+        try {
+            journal = current;
+            for (ByteBuffer payload : payloads){
+                sequence = journal.write(type, payload);
+            }
+        } finally {
+            rotation.readLock().unlock();
+        }
+        journal.sync(sequence);
+    }
+
+    /**
+     * Takes a snapshot: rotates to a new segment, writes the state,
+     * replaces the previous snapshot and deletes the segments it
+     * covers. Only the rotation briefly holds up appends.
+     * @param snapshotter {@code Snapshotter}: writes the state.
+     * @throws IOException if the snapshot cannot be written; the
+     *                     previous snapshot and segments are kept.
+     */
+    public void snapshot(Snapshotter snapshotter) throws IOException {
+        synchronized (snapshotLock){
+            Journal previous;
+            long next;
+            rotation.writeLock().lock();
+            try {
+                next = segment + 1;
+                previous = current;
+                current = Journal.open(segmentPath(directory, next), (type, payload) -> { });
+                segment = next;
+            } finally {
+                rotation.writeLock().unlock();
+            }
+            previous.close();
+
+            Path temp = directory.resolve(SNAPSHOT_TEMP);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+                ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER);
+                CRC32C crc = new CRC32C();
+                Sink sink = (type, payload) -> {
+                    if (Journal.framedSize(payload) > buffer.remaining()){
+                        drain(channel, buffer);
+                    }
+                    if (Journal.framedSize(payload) > buffer.capacity()){
+                        ByteBuffer large = ByteBuffer.allocate(Journal.framedSize(payload));
+                        Journal.frame(large, type, payload, crc);
+                        drain(channel, large);
+                    }
+                    else {
+                        Journal.frame(buffer, type, payload, crc);
+                    }
+                };
+                sink.record(HEADER, ByteBuffer.allocate(Long.BYTES).putLong(0, next));
+                snapshotter.write(sink);
+                drain(channel, buffer);
+                channel.force(true);
+            }
+            Files.move(temp, directory.resolve(SNAPSHOT),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (long number : segments(directory)){
+                if (number < next) Files.deleteIfExists(segmentPath(directory, number));
+            }
+            lastSnapshot = System.nanoTime();
+        }
+    }
+
+    /**
+     * Takes snapshots in the background on a daemon thread, whenever
+     * the interval has passed or the current segment has grown past
+     * the size limit.
+     * @param snapshotter {@code Snapshotter}: writes the state.
+     * @param interval {@code Duration}: longest time between snapshots.
+     * @param maxSegmentBytes long: segment size that triggers a snapshot.
+     */
+    public synchronized void startSnapshots(Snapshotter snapshotter, Duration interval,
+                                            long maxSegmentBytes){
+        if (scheduler != null) throw new IllegalStateException("Snapshots already started");
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "store-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long check = Math.max(1, Math.min(interval.toMillis(), 1000));
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (System.nanoTime() - lastSnapshot < interval.toNanos()
+                    && segmentSize() < maxSegmentBytes) return;
+            try {
+                snapshot(snapshotter);
+            } catch (IOException | RuntimeException e){
+                System.err.println("Snapshot failed: " + e.getMessage());
+            }
+        }, check, check, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops background snapshots and closes the current segment.
+     * @throws IOException if the final flush fails.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this){
+            if (scheduler != null) scheduler.shutdownNow();
+        }
+        synchronized (snapshotLock){
+            rotation.writeLock().lock();
+            try {
+                current.close();
+            } finally {
+                rotation.writeLock().unlock();
+            }
+        }
+    }
+
+    private long segmentSize(){
+        rotation.readLock().lock();
+        try {
+            return current.size();
+        } finally {
+            rotation.readLock().unlock();
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static Path segmentPath(Path directory, long number){
+        return directory.resolve(String.format("journal-%010d.log", number));
+    }
+
+    /*
+     * Lists segment numbers in the directory in ascending order.
+     */
+    private static List<Long> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)){
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.matches("journal-\\d+\\.log"))
+                    .map(name -> Long.parseLong(name.substring(8, name.length() - 4)))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.ecommerce.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * The Metrics class holds the timers and gauges of an ecommerce
+ * system and writes them in the Prometheus text exposition format.
+ * Timers are written as summaries in seconds, with latency quantiles,
+ * NaN before the first call, the call count and the total time;
+ * gauges are read when written.
+ * <p>
+ * A metric is named once and may carry labels, given as name and
+ * value pairs; asking again for the same name and labels returns the
+ * same timer, so callers may look timers up on each call where that
+ * is cheap next to the work timed.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class Metrics {
+
+    /**
+     * Content type of the text written by {@link #write}.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /*
+     * Quantiles written for every timer.
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /*
+     * Metrics of one name, keyed by their formatted labels.
+     */
+    private record Family(String help, String type, Map<String, Object> metrics) {
+    }
+
+    /*
+     * Families by name, written in name order.
+     */
+    private static final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    private static volatile boolean enabled = true;
+
+    private Metrics(){
+    }
+
+    /**
+     * Retrieves a timer that times every call.
+     * @param name String: metric name.
+     * @param help String: description of the metric.
+     * @param labels String[]: label names and values, in pairs.
+     * @return {@code Timer}
+     */
+    public static Timer timer(String name, String help, String... labels){
+        return sampledTimer(1, name, help, labels);
+    }
+
+    /**
+     * Retrieves a timer that times one call in {@code every} and
+     * estimates the count from them, for operations too short to
+     * count and read the clock on every call. The sampling of a timer
+     * is set by its first lookup.
+     * @param every int: calls per timed call, rounded up to a power of two.
+     * @param name String: metric name.
+     * @param help String: description of the metric.
+     * @param labels String[]: label names and values, in pairs.
+     * @return {@code Timer}
+     */
+    public static Timer sampledTimer(int every, String name, String help, String... labels){
+        return (Timer) family(name, help, "summary").metrics()
+                .computeIfAbsent(labels(labels), l -> new Timer(every));
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge of the same name and labels.
+     * @param name String: metric name.
+     * @param help String: description of the metric.
+     * @param value {@code LongSupplier}: reads the gauge's value.
+     * @param labels String[]: label names and values, in pairs.
+     */
+    public static void gauge(String name, String help, LongSupplier value, String... labels){
+        family(name, help, "gauge").metrics().put(labels(labels), value);
+    }
+
+    /**
+     * Checks whether timers record calls.
+     * @return boolean
+     */
+    public static boolean isEnabled(){
+        return enabled;
+    }
+
+    /**
+     * Turns recording by timers on or off. Counts already recorded are kept.
+     * @param enabled boolean
+     */
+    public static void setEnabled(boolean enabled){
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format.
+     * @param sb {@code StringBuilder}: destination.
+     * @return {@code StringBuilder}: sb.
+     */
+    public static StringBuilder write(StringBuilder sb){
+        families.forEach((name, family) -> {
+            sb.append("# HELP ").append(name).append(' ').append(family.help()).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(family.type()).append('\n');
+            family.metrics().forEach((labels, metric) -> {
+                if (metric instanceof Timer timer){
+                    long count = timer.getCount();
+                    long[] quantiles = timer.getQuantiles(QUANTILES);
+                    for (int i = 0; i < QUANTILES.length; i++){
+                        sample(sb, name, withLabel(labels, "quantile", Double.toString(QUANTILES[i])))
+                                .append(count == 0 ? "NaN" : Double.toString(quantiles[i] / 1e9)).append('\n');
+                    }
+                    sample(sb, name + "_sum", labels).append(timer.getTotalNanos() / 1e9).append('\n');
+                    sample(sb, name + "_count", labels).append(count).append('\n');
+                }
+                else {
+                    sample(sb, name, labels).append(((LongSupplier) metric).getAsLong()).append('\n');
+                }
+            });
+        });
+        return sb;
+    }
+
+    private static Family family(String name, String help, String type){
+        Family family = families.computeIfAbsent(name,
+                n -> new Family(help, type, new ConcurrentSkipListMap<>()));
+        if (!family.type().equals(type)){
+            throw new IllegalArgumentException("Metric " + name + " is a " + family.type());
+        }
+        return family;
+    }
+
+    private static StringBuilder sample(StringBuilder sb, String name, String labels){
+        sb.append(name);
+        if (!labels.isEmpty()) sb.append('{').append(labels).append('}');
+        return sb.append(' ');
+    }
+
+    /*
+     * Formats label pairs as name="value",... with values escaped.
+     */
+    private static String labels(String[] labels){
+        if (labels.length % 2 != 0){
+            throw new IllegalArgumentException("Labels must be given as name and value pairs");
+        }
+        String formatted = "";
+        for (int i = 0; i < labels.length; i += 2){
+            formatted = withLabel(formatted, labels[i], labels[i + 1]);
+        }
+        return formatted;
+    }
+
+    private static String withLabel(String labels, String name, String value){
+        String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return (labels.isEmpty() ? "" : labels + ",") + name + "=\"" + escaped + "\"";
+    }
+}
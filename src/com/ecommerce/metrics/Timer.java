@@ -0,0 +1,172 @@
+package com.ecommerce.metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Timer class counts the calls of one operation and records
+ * their latency in a log-linear histogram: eight buckets for each
+ * power of two nanoseconds, so a quantile is known to within 12.5%
+ * at any scale, from nanoseconds to hours, in a fixed 4 KB per stripe.
+ * <p>
+ * Recording takes no lock. Counts go to striped adders and each
+ * thread adds to one of several copies of the histogram, picked by
+ * its ID, which are summed when read. Operations taking only tens of
+ * nanoseconds may be sampled: one call in a few, picked at random,
+ * is timed and counted for all of them, so the others cost a random
+ * draw and no atomic update or clock read.
+ * <pre>
+ * long start = timer.start();
+ * ...
+ * timer.stop(start);
+ * </pre>
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class Timer {
+
+    /*
+     * Buckets per power of two, as bits, and buckets in all: values
+     * below 8 have a bucket each, then 8 per power of two up to 2^63.
+     */
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    /*
+     * Start of a call that is counted but not timed.
+     */
+    private static final long UNTIMED = Long.MIN_VALUE;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /*
+     * Histogram copies, a power of two of them, indexed by thread ID.
+     */
+    private final long[][] stripes;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder timed = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final int sampleMask;
+
+    /**
+     * Timer constructor.
+     * @param sampleEvery int: time one call in this many, rounded up
+     *                    to a power of two; 1 to time every call.
+     */
+    Timer(int sampleEvery){
+        stripes = new long[powerOfTwo(Runtime.getRuntime().availableProcessors())][];
+        for (int i = 0; i < stripes.length; i++){
+            stripes[i] = new long[BUCKETS];
+        }
+        sampleMask = powerOfTwo(sampleEvery) - 1;
+    }
+
+    /**
+     * Starts timing a call.
+     * @return long: the start, to pass to {@link #stop}.
+     */
+    public long start(){
+        if (!Metrics.isEnabled()) return UNTIMED;
+        if (sampleMask != 0 && (ThreadLocalRandom.current().nextInt() & sampleMask) != 0) return UNTIMED;
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a call's latency if it was sampled, counting it for the
+     * calls skipped.
+     * @param start long: value returned by {@link #start}.
+     */
+    public void stop(long start){
+        if (start == UNTIMED) return;
+        long latency = System.nanoTime() - start;
+        count.add(sampleMask + 1);
+        add(latency);
+    }
+
+    /**
+     * Counts a call and records its latency.
+     * @param latency long: nanoseconds the call took.
+     */
+    public void record(long latency){
+        if (!Metrics.isEnabled()) return;
+        count.increment();
+        add(latency);
+    }
+
+    private void add(long latency){
+        long[] stripe = stripes[(int) Thread.currentThread().threadId() & (stripes.length - 1)];
+        LONGS.getAndAdd(stripe, bucket(Math.max(latency, 0)), 1L);
+        timed.increment();
+        nanos.add(latency);
+    }
+
+    /**
+     * Retrieves the number of calls, estimated from the sampled
+     * calls if the timer samples.
+     * @return long: calls.
+     */
+    public long getCount(){
+        return count.sum();
+    }
+
+    /**
+     * Estimates the total time spent in the operation, scaling up
+     * the time of timed calls.
+     * @return long: nanoseconds.
+     */
+    public long getTotalNanos(){
+        long sampled = timed.sum();
+        return sampled == 0 ? 0 : (long) (nanos.sum() * ((double) count.sum() / sampled));
+    }
+
+    /**
+     * Estimates latency quantiles from the histogram.
+     * @param quantiles double[]: quantiles wanted, ascending, in [0, 1].
+     * @return long[]: for each quantile, the highest latency in its
+     *         bucket in nanoseconds, 0 if no call was timed.
+     */
+    public long[] getQuantiles(double... quantiles){
+        long[] buckets = new long[BUCKETS];
+        long total = 0;
+        for (long[] stripe : stripes){
+            for (int i = 0; i < BUCKETS; i++){
+                long n = (long) LONGS.getOpaque(stripe, i);
+                buckets[i] += n;
+                total += n;
+            }
+        }
+        long[] values = new long[quantiles.length];
+        if (total == 0) return values;
+        int bucket = 0;
+        long seen = buckets[0];
+        for (int q = 0; q < quantiles.length; q++){
+            long rank = Math.max(1, (long) Math.ceil(quantiles[q] * total));
+            while (seen < rank && bucket < BUCKETS - 1){
+                seen += buckets[++bucket];
+            }
+            values[q] = highest(bucket);
+        }
+        return values;
+    }
+
+    private static int bucket(long value){
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long highest(int bucket){
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    private static int powerOfTwo(int n){
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+}
@@ -0,0 +1,195 @@
+package com.ecommerce.orders;
+
+import com.ecommerce.Product;
+import com.ecommerce.metrics.Metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Cart class represents a customer's shopping cart in an
+ * ecommerce system.
+ * Items are keyed by product ID and the cart keeps a running total,
+ * so adding, removing, changing quantity and reading the total do
+ * not scan the cart. It performs no console I/O.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public class Cart {
+
+    /*
+     * Carts holding items and lines across all carts, for metrics.
+     */
+    private static final LongAdder carts = new LongAdder();
+    private static final LongAdder lines = new LongAdder();
+
+    static {
+        Metrics.gauge("ecommerce_carts", "Carts holding items.", carts::sum);
+        Metrics.gauge("ecommerce_cart_lines", "Distinct products across all carts.", lines::sum);
+    }
+
+    /*
+     * Cart items keyed by product ID, in the order
+     * they were first added.
+     */
+    private final Map<Integer, CartItem> items = new LinkedHashMap<>();
+    private final Collection<CartItem> itemsView =
+            Collections.unmodifiableCollection(items.values());
+
+    /*
+     * Running total in cents.
+     */
+    private long total;
+
+    /**
+     * Adds a quantity of a product to the cart.
+     * @param product {@code Product}
+     * @param quantity int: how many to add, must be positive.
+     * @throws IllegalArgumentException if the quantity is not positive
+     *                                  or would take the line past
+     *                                  {@link CartItem#MAX_QUANTITY};
+     *                                  the cart is unchanged.
+     */
+    public void add(Product product, int quantity){
+        CartItem item = items.get(product.getProductID());
+        int held = item == null ? 0 : item.getQuantity();
+        if (quantity <= 0 || quantity > CartItem.MAX_QUANTITY - held){
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        if (item == null){
+            item = new CartItem(product);
+            if (items.isEmpty()) carts.increment();
+            items.put(product.getProductID(), item);
+            lines.increment();
+            total += item.getPrice();
+            quantity--;
+        }
+        if (quantity > 0){
+            setItemQuantity(item, item.getQuantity() + quantity);
+        }
+    }
+
+    /**
+     * Sets the quantity of a product in the cart.
+     * @param product {@code Product}
+     * @param quantity int: new quantity, from 1 to
+     *                 {@link CartItem#MAX_QUANTITY}.
+     * @throws IllegalArgumentException if the quantity is out of range;
+     *                                  the cart is unchanged.
+     */
+    public void setQuantity(Product product, int quantity){
+        if (quantity <= 0 || quantity > CartItem.MAX_QUANTITY){
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
+        CartItem item = items.get(product.getProductID());
+        if (item == null){
+            add(product, quantity);
+        }
+        else {
+            setItemQuantity(item, quantity);
+        }
+    }
+
+    /**
+     * Removes a product from the cart.
+     * @param productID int: the product's ID.
+     * @return boolean: true if the product was in the cart.
+     */
+    public boolean remove(int productID){
+        CartItem item = items.remove(productID);
+        if (item == null) return false;
+        total -= item.getPrice();
+        lines.decrement();
+        if (items.isEmpty()) carts.decrement();
+        return true;
+    }
+
+    /**
+     * Retrieves the cart item of a product.
+     * @param productID int: the product's ID.
+     * @return {@code CartItem} if in cart, else null.
+     */
+    public CartItem getItem(int productID){
+        return items.get(productID);
+    }
+
+    /**
+     * Retrieves a read-only view of the cart items.
+     * @return {@code Collection(CartItem)}
+     */
+    public Collection<CartItem> getItems(){
+        return itemsView;
+    }
+
+    /**
+     * Copies the cart items into an immutable list.
+     * @return {@code List(CartItem)}
+     */
+    public List<CartItem> toList(){
+        return List.copyOf(items.values());
+    }
+
+    /**
+     * Retrieves the running total of the cart.
+     * @return long: total price of items in cart, in cents.
+     */
+    public long getTotal(){
+        return total;
+    }
+
+    /**
+     * Retrieves the number of distinct products in the cart.
+     * @return int: size
+     */
+    public int size(){
+        return items.size();
+    }
+
+    /**
+     * Checks if the cart is empty.
+     * @return boolean
+     */
+    public boolean isEmpty(){
+        return items.isEmpty();
+    }
+
+    /**
+     * Removes all items from the cart.
+     */
+    public void clear(){
+        if (items.isEmpty()) return;
+        lines.add(-items.size());
+        carts.decrement();
+        items.clear();
+        total = 0;
+    }
+
+    /*
+     * Puts back an item of a cart read from a file, without counting
+     * it as added: the carts and lines it holds were counted when it
+     * was spilled or when the file was opened.
+     */
+    void restore(CartItem item){
+        items.put(item.getProduct().getProductID(), item);
+        total += item.getPrice();
+    }
+
+    /*
+     * Adjusts the cart and line counts for carts that came into or
+     * went out of the process other than through a cart's methods.
+     */
+    static void count(long cartDelta, long lineDelta){
+        carts.add(cartDelta);
+        lines.add(lineDelta);
+    }
+
+    private void setItemQuantity(CartItem item, int quantity){
+        long before = item.getPrice();
+        item.setQuantity(quantity);
+        total += item.getPrice() - before;
+    }
+}
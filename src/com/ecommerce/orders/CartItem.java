@@ -1,5 +1,6 @@
 package com.ecommerce.orders;
 
+import com.ecommerce.Money;
 import com.ecommerce.Product;
 
 
@@ -8,12 +9,24 @@ import com.ecommerce.Product;
  * a POJO.
  * It contains information about a cart item such as:
  * product, price, quantity, price.
+ * The unit price is the product's price when the item was added, so
+ * later price changes do not alter a cart the customer has seen.
  *
  * @author Deni Wisdom Ochiche
  */
 public class CartItem{
+
+    /**
+     * Most units of a product one cart line may hold.
+     */
+    public static final int MAX_QUANTITY = 10_000;
+
     private int quantity;
-    private double price;
+    /*
+     * Price of the item in cents: unit price times quantity.
+     */
+    private long price;
+    private final long unitPrice;
     private final Product product;
 
     /**
@@ -22,10 +35,20 @@ public class CartItem{
      */
     public CartItem(Product product){
         this.product = product;
-        this.price = product.getPrice();
+        this.unitPrice = product.getPrice();
+        this.price = unitPrice;
         quantity++;
     }
 
+    /*
+     * Recreates an item at the unit price it was added at.
+     */
+    CartItem(Product product, long unitPrice, int quantity){
+        this.product = product;
+        this.unitPrice = unitPrice;
+        setQuantity(quantity);
+    }
+
     /**
      * Retrieves the product quantity
      * @return int: quantity
@@ -44,18 +67,31 @@ public class CartItem{
 
     /**
      * Sets the quantity of the product.
-     * @param quantity int: quantity of product
+     * @param quantity int: quantity of product, from 1 to
+     *                 {@link #MAX_QUANTITY}.
+     * @throws IllegalArgumentException if the quantity is out of range.
      */
     public void setQuantity(int quantity) {
+        if (quantity <= 0 || quantity > MAX_QUANTITY){
+            throw new IllegalArgumentException("Invalid quantity: " + quantity);
+        }
         this.quantity = quantity;
-        this.price = product.getPrice() * this.quantity;
+        this.price = Money.times(unitPrice, this.quantity);
+    }
+
+    /**
+     * Retrieves the unit price the item was added at.
+     * @return long: unit price in cents
+     */
+    public long getUnitPrice() {
+        return unitPrice;
     }
 
     /**
      * Retrieves price of {@code CartItem}
-     * @return double: price
+     * @return long: price in cents
      */
-    public double getPrice() {
+    public long getPrice() {
         return price;
     }
 
@@ -0,0 +1,517 @@
+package com.ecommerce.orders;
+
+import com.ecommerce.Product;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * The CartStore class holds the shopping carts of an ecommerce system
+ * in a bounded cache of the most recently used, spilling carts that
+ * fall out of it to a compact file and reading them back when next
+ * used, so abandoned carts cost eight bytes of heap each however many
+ * there are.
+ * <p>
+ * Carts are split by customer ID over segments, each a map in access
+ * order under its own lock. Every use of a cart runs under its
+ * segment's lock, so a cart is never spilled while in use. The file
+ * is only appended to: a spilled cart is written as one record and
+ * its offset kept in a paged array indexed by customer ID, and a cart
+ * read back is marked gone by a record with no lines. Empty carts are
+ * neither cached nor written.
+ * <p>
+ * Opened on a file, the store indexes the latest record of each
+ * customer, compacting the file when most of it is stale, and closing
+ * writes out every cached cart, so carts survive a restart. Until
+ * opened, carts spill to a temporary file deleted when the store is
+ * opened or the JVM exits.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class CartStore {
+
+    /**
+     * Carts held in memory by default.
+     */
+    public static final int DEFAULT_CAPACITY = 100_000;
+
+    private static final int SEGMENTS = 64;
+
+    /*
+     * A record is the customer ID and line count, then the product
+     * ID, quantity and unit price of each line.
+     */
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int LINE_BYTES = 2 * Integer.BYTES + Long.BYTES;
+
+    /*
+     * Stale bytes tolerated in an opened file before it is compacted,
+     * beyond as many as are live.
+     */
+    private static final long COMPACT_SLACK = 1L << 20;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Offsets offsets = new Offsets();
+
+    /*
+     * Carts and lines written to the file and not read back.
+     */
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder spilledLines = new LongAdder();
+
+    /*
+     * File carts spill to, created on the first spill until opened,
+     * and the offset the next record is written at. The path is set
+     * only while opened on a file.
+     */
+    private volatile FileChannel file;
+    private final AtomicLong end = new AtomicLong();
+    private Path path;
+
+    /**
+     * CartStore constructor.
+     * @param capacity int: carts held in memory, spread evenly over
+     *                 the segments.
+     */
+    public CartStore(int capacity){
+        if (capacity <= 0){
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        for (int i = 0; i < SEGMENTS; i++){
+            segments[i] = new Segment(Math.max(1, capacity / SEGMENTS));
+        }
+    }
+
+    /*
+     * Carts of the customers whose IDs fall in a segment, least
+     * recently used first. Adding a cart past capacity spills the
+     * eldest, which stays cached if it cannot be written.
+     */
+    private final class Segment extends LinkedHashMap<Integer, Cart> {
+        private static final long serialVersionUID = 1L;
+        private final transient ReentrantLock lock = new ReentrantLock();
+        private final int capacity;
+
+        Segment(int capacity){
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Cart> eldest){
+            return size() > capacity && spill(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    /*
+     * Index entries by customer ID, in pages that never move once
+     * created; an entry is read and written under its customer's
+     * segment lock. An entry packs the line count of the record
+     * above the offset plus one, and is zero when nothing is spilled.
+     */
+    private static final class Offsets {
+        private static final int PAGE_BITS = 12;
+        private static final int PAGE_SIZE = 1 << PAGE_BITS;
+        private static final int OFFSET_BITS = 40;
+
+        private volatile long[][] pages = new long[1][];
+
+        static long entry(long offset, int lines){
+            return (long) lines << OFFSET_BITS | offset + 1;
+        }
+
+        static long offset(long entry){
+            return (entry & (1L << OFFSET_BITS) - 1) - 1;
+        }
+
+        static int lines(long entry){
+            return (int) (entry >>> OFFSET_BITS);
+        }
+
+        long get(int ID){
+            long[][] directory = pages;
+            int index = ID >>> PAGE_BITS;
+            if (ID < 0 || index >= directory.length || directory[index] == null) return 0;
+            return directory[index][ID & (PAGE_SIZE - 1)];
+        }
+
+        void set(int ID, long entry){
+            if (entry == 0 && get(ID) == 0) return;
+            page(ID)[ID & (PAGE_SIZE - 1)] = entry;
+        }
+
+        /*
+         * Highest ID an entry may be kept for, plus one.
+         */
+        int limit(){
+            return pages.length << PAGE_BITS;
+        }
+
+        synchronized void clear(){
+            pages = new long[1][];
+        }
+
+        private long[] page(int ID){
+            long[][] directory = pages;
+            int index = ID >>> PAGE_BITS;
+            if (index < directory.length && directory[index] != null) return directory[index];
+            synchronized (this){
+                directory = pages;
+                if (index >= directory.length){
+                    directory = Arrays.copyOf(directory, Math.max(directory.length * 2, index + 1));
+                }
+                if (directory[index] == null){
+                    directory = directory == pages ? directory.clone() : directory;
+                    directory[index] = new long[PAGE_SIZE];
+                    pages = directory;
+                }
+                return directory[index];
+            }
+        }
+    }
+
+    /**
+     * Applies an action to a customer's cart, reading it back from
+     * the file if it was spilled. A customer without a cart is given
+     * an empty one, kept only if the action adds to it.
+     * @param customerID int: the customer's ID.
+     * @param action {@code Function(Cart, T)}: runs holding the
+     *               cart's segment lock, and must not keep the cart.
+     * @param <T> result type.
+     * @return T: result of the action.
+     * @throws UncheckedIOException if a spilled cart cannot be read.
+     */
+    public <T> T apply(int customerID, Function<Cart, T> action){
+        Segment segment = segments[customerID & (SEGMENTS - 1)];
+        segment.lock.lock();
+        try {
+            Cart cart = segment.get(customerID);
+            boolean cached = cart != null;
+            if (!cached) cart = load(customerID);
+            try {
+                return action.apply(cart);
+            } finally {
+                if (cart.isEmpty()){
+                    if (cached) segment.remove(customerID);
+                }
+                else if (!cached){
+                    segment.put(customerID, cart);
+                }
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of carts held in memory.
+     * @return long: cached carts.
+     */
+    public long getCachedCount(){
+        long count = 0;
+        for (Segment segment : segments){
+            count += segment.size();
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the number of carts spilled to the file.
+     * @return long: spilled carts.
+     */
+    public long getSpilledCount(){
+        return spilled.sum();
+    }
+
+    /**
+     * Opens the store on a file, indexing carts written to it by
+     * earlier runs. Carts cached now are kept and take the place of
+     * any in the file. Nothing may be spilled yet.
+     * @param path {@code Path}: the file, created if missing.
+     * @throws IOException if the file cannot be read or compacted.
+     */
+    public void open(Path path) throws IOException {
+        lockAll();
+        try {
+            if (this.path != null) throw new IllegalStateException("Cart store is already open");
+            if (spilled.sum() > 0) throw new IllegalStateException("Carts are spilled to a temporary file");
+            if (file != null){
+                file.close();
+                file = null;
+            }
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                long live = scan(channel);
+                if (channel.size() - live > live + COMPACT_SLACK){
+                    channel = compact(path, channel);
+                }
+            } catch (IOException | RuntimeException e){
+                channel.close();
+                offsets.clear();
+                spilled.reset();
+                spilledLines.reset();
+                throw e;
+            }
+            end.set(channel.size());
+            file = channel;
+            this.path = path;
+            Cart.count(spilled.sum(), spilledLines.sum());
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Writes every cached cart to the file and closes it, if opened
+     * on one. The store is then empty until opened again.
+     * @throws IOException if the carts cannot be written.
+     */
+    public void close() throws IOException {
+        lockAll();
+        try {
+            if (path == null) return;
+            FileChannel channel = file;
+            long carts = spilled.sum();
+            long lines = spilledLines.sum();
+            ByteBuffer batch = ByteBuffer.allocate(1 << 20);
+            long position = end.get();
+            try {
+                for (Segment segment : segments){
+                    for (Map.Entry<Integer, Cart> cached : segment.entrySet()){
+                        Cart cart = cached.getValue();
+                        if (batch.remaining() < HEADER_BYTES + cart.size() * LINE_BYTES){
+                            position += writeFully(channel, batch.flip(), position);
+                            batch = ByteBuffer.allocate(Math.max(batch.capacity(),
+                                    HEADER_BYTES + cart.size() * LINE_BYTES));
+                        }
+                        encode(batch, cached.getKey(), cart);
+                        carts++;
+                        lines += cart.size();
+                    }
+                }
+                writeFully(channel, batch.flip(), position);
+                channel.force(false);
+            } finally {
+                channel.close();
+                file = null;
+                path = null;
+                end.set(0);
+                for (Segment segment : segments){
+                    segment.clear();
+                }
+                offsets.clear();
+                spilled.reset();
+                spilledLines.reset();
+                Cart.count(-carts, -lines);
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /*
+     * Writes a cart to the file and indexes it. Called holding the
+     * cart's segment lock.
+     */
+    private boolean spill(int customerID, Cart cart){
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + cart.size() * LINE_BYTES);
+        try {
+            long offset = append(encode(record, customerID, cart).flip());
+            offsets.set(customerID, Offsets.entry(offset, cart.size()));
+        } catch (IOException e) {
+            return false;
+        }
+        spilled.increment();
+        spilledLines.add(cart.size());
+        return true;
+    }
+
+    /*
+     * Reads a customer's cart back from the file, or a new cart if
+     * none was spilled. Called holding the cart's segment lock.
+     */
+    private Cart load(int customerID){
+        long entry = offsets.get(customerID);
+        if (entry == 0) return new Cart();
+        int lines = Offsets.lines(entry);
+        Cart cart = new Cart();
+        try {
+            ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + lines * LINE_BYTES);
+            readFully(file, record, Offsets.offset(entry));
+            record.flip();
+            if (record.getInt() != customerID || record.getInt() != lines){
+                throw new IOException("Corrupt cart record of customer " + customerID);
+            }
+            if (path != null){
+                append(ByteBuffer.allocate(HEADER_BYTES).putInt(customerID).putInt(0).flip());
+            }
+            for (int line = 0; line < lines; line++){
+                Product product = Product.getProduct(record.getInt());
+                int quantity = record.getInt();
+                long unitPrice = record.getLong();
+                if (product != null && quantity > 0 && quantity <= CartItem.MAX_QUANTITY){
+                    cart.restore(new CartItem(product, unitPrice, quantity));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read cart", e);
+        }
+        offsets.set(customerID, 0);
+        spilled.decrement();
+        spilledLines.add(-lines);
+        Cart.count(cart.isEmpty() ? -1 : 0, cart.size() - lines);
+        return cart;
+    }
+
+    private static ByteBuffer encode(ByteBuffer record, int customerID, Cart cart){
+        record.putInt(customerID).putInt(cart.size());
+        for (CartItem item : cart.getItems()){
+            record.putInt(item.getProduct().getProductID()).putInt(item.getQuantity())
+                    .putLong(item.getUnitPrice());
+        }
+        return record;
+    }
+
+    /*
+     * Appends a record, creating a temporary file to spill to if the
+     * store is not opened on one.
+     * @return offset it was written at.
+     */
+    private long append(ByteBuffer record) throws IOException {
+        FileChannel channel = file;
+        if (channel == null){
+            synchronized (this){
+                channel = file;
+                if (channel == null){
+                    Path temporary = Files.createTempFile("carts", ".bin");
+                    channel = FileChannel.open(temporary, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+                    temporary.toFile().deleteOnExit();
+                    file = channel;
+                }
+            }
+        }
+        long offset = end.getAndAdd(record.remaining());
+        writeFully(channel, record, offset);
+        return offset;
+    }
+
+    /*
+     * Indexes the latest record of each customer without a cached
+     * cart, truncating a record cut short by a crash.
+     * @return bytes of the records indexed.
+     */
+    private long scan(FileChannel channel) throws IOException {
+        long live = 0;
+        long position = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(0)), 1 << 16));
+        try {
+            while (true){
+                int customerID = in.readInt();
+                int lines = in.readInt();
+                if (lines < 0 || customerID <= 0) throw new EOFException();
+                in.skipNBytes((long) lines * LINE_BYTES);
+                long previous = offsets.get(customerID);
+                if (previous != 0){
+                    live -= HEADER_BYTES + (long) Offsets.lines(previous) * LINE_BYTES;
+                    spilled.decrement();
+                    spilledLines.add(-Offsets.lines(previous));
+                }
+                boolean cached = segments[customerID & (SEGMENTS - 1)].containsKey(customerID);
+                if (lines > 0 && !cached){
+                    offsets.set(customerID, Offsets.entry(position, lines));
+                    live += HEADER_BYTES + (long) lines * LINE_BYTES;
+                    spilled.increment();
+                    spilledLines.add(lines);
+                }
+                else {
+                    offsets.set(customerID, 0);
+                }
+                position += HEADER_BYTES + (long) lines * LINE_BYTES;
+            }
+        } catch (EOFException e) {
+            if (channel.size() > position) channel.truncate(position);
+        }
+        return live;
+    }
+
+    /*
+     * Rewrites the indexed records to a new file in customer ID order
+     * and moves it over the old one.
+     * @return channel of the new file.
+     */
+    private FileChannel compact(Path path, FileChannel old) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+            ByteBuffer batch = ByteBuffer.allocate(1 << 20);
+            long position = 0;
+            long written = 0;
+            for (int ID = 1; ID < offsets.limit(); ID++){
+                long entry = offsets.get(ID);
+                if (entry == 0) continue;
+                int length = HEADER_BYTES + Offsets.lines(entry) * LINE_BYTES;
+                if (batch.remaining() < length){
+                    written += writeFully(out, batch.flip(), written);
+                    batch = ByteBuffer.allocate(Math.max(batch.capacity(), length));
+                }
+                readFully(old, batch.slice(batch.position(), length), Offsets.offset(entry));
+                batch.position(batch.position() + length);
+                offsets.set(ID, Offsets.entry(position, Offsets.lines(entry)));
+                position += length;
+            }
+            writeFully(out, batch.flip(), written);
+            out.force(false);
+        }
+        old.close();
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()){
+            position += channel.write(buffer, position);
+        }
+        return length;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()){
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new EOFException("Cart record past end of file");
+            position += read;
+        }
+    }
+
+    private void lockAll(){
+        for (Segment segment : segments){
+            segment.lock.lock();
+        }
+    }
+
+    private void unlockAll(){
+        for (int i = segments.length - 1; i >= 0; i--){
+            segments[i].lock.unlock();
+        }
+    }
+}
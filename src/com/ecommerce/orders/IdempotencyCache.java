@@ -0,0 +1,159 @@
+package com.ecommerce.orders;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The IdempotencyCache class remembers for a while the orders placed
+ * under idempotency keys, so a checkout retried with the same key is
+ * given the order already placed instead of placing another.
+ * <p>
+ * Keys are scoped to a customer. Entries live in a fixed table of
+ * slots, read without locking and replaced with compare-and-set; a
+ * key may sit in any of a few slots from the one its hash picks. When
+ * all of them hold live entries, the entry expiring soonest gives way,
+ * so the cache never grows past its capacity, and at a sustained rate
+ * of more than its capacity of keys per time to live, keys are
+ * forgotten early.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class IdempotencyCache {
+
+    /**
+     * Keys remembered by default.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 18;
+
+    /**
+     * How long a key is remembered by default.
+     */
+    public static final Duration DEFAULT_TTL = Duration.ofHours(1);
+
+    /*
+     * Slots a key may sit in, from the one its hash picks.
+     */
+    private static final int PROBES = 8;
+
+    /*
+     * An order placed under a key, and when the key is forgotten
+     * in epoch milliseconds.
+     */
+    private record Entry(int customerID, String key, CompletableFuture<Order> order, long expires) {
+        boolean holds(int customerID, String key){
+            return this.customerID == customerID && this.key.equals(key);
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final long ttlMillis;
+
+    /**
+     * IdempotencyCache constructor.
+     * @param capacity int: keys remembered, rounded up to a power of two.
+     * @param ttl {@code Duration}: how long a key is remembered.
+     */
+    public IdempotencyCache(int capacity, Duration ttl){
+        if (capacity <= 0 || capacity > 1 << 30){
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        if (ttl.isNegative() || ttl.isZero()){
+            throw new IllegalArgumentException("Invalid time to live: " + ttl);
+        }
+        this.slots = new AtomicReferenceArray<>(Math.max(PROBES, Integer.highestOneBit(capacity - 1) << 1));
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    /**
+     * Retrieves the order placed under a key, without locking.
+     * @param customerID int: the customer's ID.
+     * @param key String: the idempotency key.
+     * @return {@code CompletableFuture(Order)}: the order placed, or
+     *         null if the key is unknown or has expired.
+     */
+    public CompletableFuture<Order> get(int customerID, String key){
+        long now = System.currentTimeMillis();
+        int mask = slots.length() - 1;
+        int first = slot(customerID, key);
+        for (int i = 0; i < PROBES; i++){
+            Entry entry = slots.get((first + i) & mask);
+            if (entry != null && entry.expires() > now && entry.holds(customerID, key)) return entry.order();
+        }
+        return null;
+    }
+
+    /**
+     * Remembers the order placed under a key, replacing any order the
+     * key had. Callers place one order per customer at a time.
+     * @param customerID int: the customer's ID.
+     * @param key String: the idempotency key.
+     * @param order {@code CompletableFuture(Order)}: the order placed.
+     */
+    public void put(int customerID, String key, CompletableFuture<Order> order){
+        int mask = slots.length() - 1;
+        int first = slot(customerID, key);
+        while (true){
+            long now = System.currentTimeMillis();
+            int victim = -1;
+            Entry replaced = null;
+            for (int i = 0; i < PROBES; i++){
+                int slot = (first + i) & mask;
+                Entry entry = slots.get(slot);
+                if (entry == null || entry.expires() <= now || entry.holds(customerID, key)){
+                    victim = slot;
+                    replaced = entry;
+                    break;
+                }
+                if (replaced == null || entry.expires() < replaced.expires()){
+                    victim = slot;
+                    replaced = entry;
+                }
+            }
+            if (slots.compareAndSet(victim, replaced, new Entry(customerID, key, order, now + ttlMillis))){
+                if (replaced == null || !replaced.holds(customerID, key)) forget(customerID, key, victim);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forgets a key if it still holds an order, so a checkout that
+     * failed may be retried under the same key.
+     * @param customerID int: the customer's ID.
+     * @param key String: the idempotency key.
+     * @param order {@code CompletableFuture(Order)}: the order placed.
+     */
+    public void remove(int customerID, String key, CompletableFuture<Order> order){
+        int mask = slots.length() - 1;
+        int first = slot(customerID, key);
+        for (int i = 0; i < PROBES; i++){
+            int slot = (first + i) & mask;
+            Entry entry = slots.get(slot);
+            if (entry != null && entry.order() == order && entry.holds(customerID, key)){
+                slots.compareAndSet(slot, entry, null);
+                return;
+            }
+        }
+    }
+
+    /*
+     * Clears a stale copy of a key from the slots after the one it was
+     * just written to, left there when an earlier slot was freed.
+     */
+    private void forget(int customerID, String key, int written){
+        int mask = slots.length() - 1;
+        int first = slot(customerID, key);
+        for (int i = 0; i < PROBES; i++){
+            int slot = (first + i) & mask;
+            if (slot == written) continue;
+            Entry entry = slots.get(slot);
+            if (entry != null && entry.holds(customerID, key)) slots.compareAndSet(slot, entry, null);
+        }
+    }
+
+    private int slot(int customerID, String key){
+        int hash = customerID * 0x9E3779B9 ^ key.hashCode();
+        return (hash ^ hash >>> 16) & (slots.length() - 1);
+    }
+}
@@ -1,11 +1,22 @@
 package com.ecommerce.orders;
 
 import com.ecommerce.Customer;
+import com.ecommerce.Money;
+import com.ecommerce.Persistence;
+import com.ecommerce.Product;
+import com.ecommerce.Registry;
+import com.ecommerce.metrics.Metrics;
+import com.ecommerce.render.ReceiptWriter;
 
-import java.text.SimpleDateFormat;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * The Order class represents an Order in an ecommerce system.
@@ -18,39 +29,182 @@ public class Order {
     /*
      * Contains only valid order status's
      */
-    public enum Status { PENDING, DELIVERED, CANCELLED}
+    public enum Status {
+        PENDING, DELIVERED, CANCELLED;
+
+        /*
+         * Statuses each status may move to. Delivered and
+         * cancelled orders are final.
+         */
+        private static final Set<Status> FROM_PENDING = EnumSet.of(DELIVERED, CANCELLED);
+
+        /**
+         * Checks whether an order may move from this status to another.
+         * @param status {@code Status}
+         * @return boolean
+         */
+        public boolean canMoveTo(Status status){
+            return switch (this){
+                case PENDING -> FROM_PENDING.contains(status);
+                case DELIVERED, CANCELLED -> false;
+            };
+        }
+
+        /**
+         * Parses a status name in any case.
+         * @param name String
+         * @return {@code Status}
+         * @throws IllegalArgumentException if no status has that name.
+         */
+        public static Status parse(String name){
+            try {
+                return valueOf(name.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid order status: " + name);
+            }
+        }
+    }
+
+    /**
+     * Result of moving an order to a status.
+     */
+    public enum StatusChange {
+        /** The order moved to the status. */
+        CHANGED,
+        /** The order already had the status. */
+        UNCHANGED,
+        /** The order's status may not move to the status. */
+        REJECTED
+    }
+
+    /**
+     * Customer ID matching orders of any customer in
+     * {@link #findOrders}.
+     */
+    public static final int ANY_CUSTOMER = 0;
 
     /*
      * Stores all orders in an ecommerce
-     * system.
+     * system and allocates their IDs.
+     */
+    private static final Registry<Order> orderHistory = new Registry<>();
+
+    /*
+     * Read-only view over order history.
      */
-    private static final ArrayList<Order> orderHistory = new ArrayList<>();
+    private static final Collection<Order> orderHistoryView =
+            Collections.unmodifiableCollection(orderHistory);
 
     /*
-     * Length of order for OrderId allocation.
+     * Secondary indexes over order history.
      */
-    private static int length = 0;
+    private static final OrderIndex index = new OrderIndex();
+
+    /*
+     * Sales figures kept up to date with order history.
+     */
+    private static final SalesAnalytics analytics = new SalesAnalytics();
+
+    static {
+        Metrics.gauge("ecommerce_orders", "Orders in order history.", orderHistory::size);
+        for (Status status : Status.values()){
+            Metrics.gauge("ecommerce_orders_by_status", "Orders in order history by status.",
+                    () -> analytics.getOrderCount(status), "status", status.name());
+        }
+    }
+
     private final int orderId;
     private final Customer customer;
-    private final List<CartItem> products;
-    private final double total;
-    private Status orderStatus;
-    private final Date date;
 
+    /*
+     * Order lines in parallel arrays: product ID, quantity and
+     * unit price in cents at the time of purchase.
+     */
+    private final int[] productIDs;
+    private final int[] quantities;
+    private final long[] unitPrices;
+    private final long total;
+    private volatile Status orderStatus;
+
+    /*
+     * Status is changed with compare-and-set, so of two concurrent
+     * changes from one status only one takes effect.
+     */
+    private static final VarHandle STATUS;
+
+    static {
+        try {
+            STATUS = MethodHandles.lookup().findVarHandle(Order.class, "orderStatus", Status.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /*
+     * Order time in epoch milliseconds.
+     */
+    private final long time;
+
+    /*
+     * Order lines copied out of a cart, in the parallel array form
+     * an order keeps them in.
+     */
+    record Lines(int[] productIDs, int[] quantities, long[] unitPrices) {
+
+        static Lines of(Collection<CartItem> items){
+            int lines = items.size();
+            int[] productIDs = new int[lines];
+            int[] quantities = new int[lines];
+            long[] unitPrices = new long[lines];
+            int i = 0;
+            for (CartItem item : items){
+                productIDs[i] = item.getProduct().getProductID();
+                quantities[i] = item.getQuantity();
+                unitPrices[i] = item.getUnitPrice();
+                i++;
+            }
+            return new Lines(productIDs, quantities, unitPrices);
+        }
+    }
 
     /**
-     * Order constructor.
+     * Order constructor. The cart items are copied into the order,
+     * so later changes to the cart or to product prices do not
+     * affect it.
      * @param customer {@code Customer}: a customer.
-     * @param products {@code List(Customer)}: a customer.
-     * @param total int: total amount.
+     * @param products {@code Collection(CartItem)}: items ordered.
+     * @param total long: total amount in cents.
      */
-    public Order(Customer customer, List<CartItem> products, double total){
-        this.orderId = ++length;
-        this.products = products;
+    public Order(Customer customer, Collection<CartItem> products, long total){
+        this(customer, Lines.of(products), total, System.currentTimeMillis());
+    }
+
+    /*
+     * Creates a pending order with the next ID.
+     */
+    Order(Customer customer, Lines lines, long total, long time){
+        this(orderHistory.nextID(), customer, lines.productIDs(), lines.quantities(),
+                lines.unitPrices(), total, Status.PENDING, time);
+    }
+
+    private Order(int orderId, Customer customer, int[] productIDs, int[] quantities,
+                  long[] unitPrices, long total, Status orderStatus, long time){
+        this.orderId = orderId;
         this.customer = customer;
+        this.productIDs = productIDs;
+        this.quantities = quantities;
+        this.unitPrices = unitPrices;
         this.total = total;
-        this.orderStatus = Status.PENDING;
-        this.date = new Date();
+        this.orderStatus = orderStatus;
+        this.time = time;
+    }
+
+    /*
+     * Creates a search key sorting before every order placed
+     * at the given time.
+     */
+    static Order probe(long time){
+        return new Order(Integer.MIN_VALUE, null, null, null, null, 0, null, time);
     }
 
     /**
@@ -70,51 +224,308 @@ public class Order {
     }
 
     /**
-     * Retrieves products in customer's cart.
-     * @return {@code List(CartItem)}
+     * Retrieves the number of lines in the order.
+     * @return int: line count.
+     */
+    public int getLineCount() {
+        return productIDs.length;
+    }
+
+    /**
+     * Retrieves the product ID of an order line.
+     * @param line int: line index, from 0.
+     * @return int: product ID.
+     */
+    public int getProductID(int line) {
+        return productIDs[line];
+    }
+
+    /**
+     * Retrieves the quantity of an order line.
+     * @param line int: line index, from 0.
+     * @return int: quantity.
+     */
+    public int getQuantity(int line) {
+        return quantities[line];
+    }
+
+    /**
+     * Retrieves the unit price an order line was bought at.
+     * @param line int: line index, from 0.
+     * @return long: unit price in cents.
      */
-    public List<CartItem> getProducts() {
-        return products;
+    public long getUnitPrice(int line) {
+        return unitPrices[line];
     }
 
     /**
-     * Adds a list of products to order's product list
-     * @param p {@code List<CartItem>}
+     * Retrieves the price of an order line: unit price times quantity.
+     * @param line int: line index, from 0.
+     * @return long: line price in cents.
      */
-    public void addProducts(List<CartItem> p){
-        products.addAll(p);
+    public long getLinePrice(int line) {
+        return Money.times(unitPrices[line], quantities[line]);
+    }
+
+    /**
+     * Retrieves the name of the product of an order line.
+     * @param line int: line index, from 0.
+     * @return String: product name, or its ID if no longer in
+     *                 the catalog.
+     */
+    public String getProductName(int line) {
+        Product product = Product.getProduct(productIDs[line]);
+        return product != null ? product.getName() : "#" + productIDs[line];
     }
 
     /**
      * Retrieves total sum of product's amount in order
-     * @return int: total
+     * @return long: total in cents
      */
-    public double getTotal() {
+    public long getTotal() {
         return total;
     }
 
     /**
      * Retrieves the date issued when ordered.
-     * @return {@code Date}: date
+     * @return {@code Instant}: date
+     */
+    public Instant getDate() {
+        return Instant.ofEpochMilli(time);
+    }
+
+    /**
+     * Retrieves the time the order was placed.
+     * @return long: time in epoch milliseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Retrieves a read-only view of Order history for admin, in ID order.
+     * @return {@code Collection<Order>}: order history.
+     */
+    public static Collection<Order> getOrderHistory() {
+        return orderHistoryView;
+    }
+
+    /**
+     * Retrieves a page of order history in ID order.
+     * @param afterID int: ID of the last order of the previous page,
+     *                0 for the first page.
+     * @param limit int: maximum number of orders.
+     * @return {@code List<Order>}: the page, empty past the last order.
+     */
+    public static List<Order> listOrders(int afterID, int limit) {
+        return orderHistory.page(afterID, limit);
+    }
+
+    /*
+     * Retrieves the last order ID allocated, bounding the IDs in
+     * order history.
      */
-    public Date getDate() {
-        return date;
+    static int lastOrderID() {
+        return orderHistory.lastID();
     }
 
     /**
-     * Retrieves Order history for admin.
-     * @return {@code List<Order>}: order history.
+     * Retrieves an order from order history.
+     * @param ID int: the order's ID.
+     * @return {@code Order} if found, else null.
      */
-    public static List<Order> getOrderHistory() {
-        return List.copyOf(orderHistory);
+    public static Order getOrder(int ID) {
+        return orderHistory.get(ID);
     }
 
     /**
-     *  Adds an order to order history.
+     * Adds an order to order history, reserving the stock of every
+     * line first. Either every line is reserved or none is.
      * @param order {@code Order}
+     * @throws IllegalStateException if a product is out of stock;
+     *                               the order is not added.
+     * @throws java.io.UncheckedIOException if the order cannot be
+     *         persisted; it is taken back out of order history and
+     *         its stock returned.
      */
     public static void addOrderToHistory(Order order) {
-        orderHistory.add(order);
+        order.reserveStock();
+        if (!register(order)){
+            order.releaseStock();
+            return;
+        }
+        try {
+            Persistence.orderPlaced(order);
+        } catch (RuntimeException e) {
+            withdraw(order);
+            throw e;
+        }
+    }
+
+    private static boolean register(Order order) {
+        if (!orderHistory.register(order.getOrderID(), order)) return false;
+        index.add(order);
+        analytics.orderAdded(order);
+        return true;
+    }
+
+    /*
+     * Adds new orders whose stock is already reserved to order
+     * history, persisting the batch with a single sync. If that
+     * fails, the whole batch is withdrawn before the error is thrown.
+     */
+    static void addBatchToHistory(List<Order> orders) {
+        for (Order order : orders){
+            register(order);
+        }
+        try {
+            Persistence.ordersPlaced(orders);
+        } catch (RuntimeException e) {
+            for (Order order : orders){
+                withdraw(order);
+            }
+            throw e;
+        }
+    }
+
+    /*
+     * Takes an order that could not be persisted back out of order
+     * history, the indexes and the sales figures, and returns its
+     * stock unless it was cancelled meanwhile.
+     */
+    private static void withdraw(Order order) {
+        if (!orderHistory.unregister(order.getOrderID(), order)) return;
+        index.remove(order);
+        analytics.orderRemoved(order);
+        if (order.getOrderStatus() != Status.CANCELLED) order.releaseStock();
+    }
+
+    private void reserveStock() {
+        reserveStock(productIDs, quantities);
+    }
+
+    /*
+     * Reserves each line in turn, and on a shortage returns the
+     * lines already reserved. No lock is held, so a concurrent
+     * checkout may briefly see stock that is then returned.
+     */
+    static void reserveStock(int[] productIDs, int[] quantities) {
+        for (int line = 0; line < productIDs.length; line++){
+            Product product = Product.getProduct(productIDs[line]);
+            if (product != null && !product.reserve(quantities[line])){
+                releaseStock(productIDs, quantities, line);
+                throw new IllegalStateException("Out of stock: " + product.getName());
+            }
+        }
+    }
+
+    private void releaseStock() {
+        releaseStock(productIDs, quantities, productIDs.length);
+    }
+
+    /*
+     * Returns the stock of the first count lines.
+     */
+    static void releaseStock(int[] productIDs, int[] quantities, int count) {
+        for (int line = 0; line < count; line++){
+            Product product = Product.getProduct(productIDs[line]);
+            if (product != null) product.release(quantities[line]);
+        }
+    }
+
+    private void deductStock() {
+        for (int line = 0; line < productIDs.length; line++){
+            Product product = Product.getProduct(productIDs[line]);
+            if (product != null) product.deduct(quantities[line]);
+        }
+    }
+
+    /**
+     * Finds orders placed in a time range, using the order indexes.
+     * Runs in time proportional to the number of orders found.
+     * @param customerID int: customer's ID, or {@code ANY_CUSTOMER}.
+     * @param status {@code Status}, or null for any status.
+     * @param from long: start of range in epoch milliseconds, inclusive.
+     * @param to long: end of range in epoch milliseconds, exclusive.
+     * @return {@code List<Order>}: matching orders, oldest first.
+     */
+    public static List<Order> findOrders(int customerID, Status status, long from, long to) {
+        return index.find(customerID, status, from, to);
+    }
+
+    /**
+     * Finds a page of orders placed in a time range, using the order
+     * indexes. Pass the ID of the last order of a page to get the
+     * next one; a page costs the same however many orders match.
+     * @param customerID int: customer's ID, or {@code ANY_CUSTOMER}.
+     * @param status {@code Status}, or null for any status.
+     * @param from long: start of range in epoch milliseconds, inclusive.
+     * @param to long: end of range in epoch milliseconds, exclusive.
+     * @param afterID int: cursor, 0 for the first page.
+     * @param limit int: maximum number of orders.
+     * @return {@code List<Order>}: matching orders, oldest first.
+     * @throws IllegalArgumentException if no order has the cursor's ID.
+     */
+    public static List<Order> findOrders(int customerID, Status status, long from, long to,
+                                         int afterID, int limit) {
+        Order after = afterID > 0 ? orderHistory.get(afterID) : null;
+        if (afterID > 0 && after == null){
+            throw new IllegalArgumentException("No order with ID " + afterID);
+        }
+        return index.find(customerID, status, from, to, after, limit);
+    }
+
+    /**
+     * Retrieves all orders of a customer.
+     * @param customerID int: customer's ID.
+     * @return {@code List<Order>}: the customer's orders, oldest first.
+     */
+    public static List<Order> getOrdersByCustomer(int customerID) {
+        return findOrders(customerID, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Retrieves all orders with a status.
+     * @param status {@code Status}
+     * @return {@code List<Order>}: matching orders, oldest first.
+     */
+    public static List<Order> getOrdersByStatus(Status status) {
+        return findOrders(ANY_CUSTOMER, status, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Retrieves sales figures over order history, kept up to date
+     * as orders are placed and change status.
+     * @return {@code SalesAnalytics}
+     */
+    public static SalesAnalytics getSalesAnalytics() {
+        return analytics;
+    }
+
+    /**
+     * Restores an order saved by an earlier run, keeping its ID.
+     * Unless cancelled, its lines are taken from stock again.
+     * The line arrays are kept by the order and must not be changed.
+     * @param ID int: the order's ID.
+     * @param customer {@code Customer}: the customer who ordered.
+     * @param productIDs int[]: product ID of each line.
+     * @param quantities int[]: quantity of each line.
+     * @param unitPrices long[]: unit price of each line in cents.
+     * @param total long: total amount in cents.
+     * @param status {@code Status}: status of the order.
+     * @param date long: order time in epoch milliseconds.
+     * @return {@code Order}: the registered order.
+     */
+    public static Order restoreOrder(int ID, Customer customer, int[] productIDs,
+                                     int[] quantities, long[] unitPrices, long total,
+                                     Status status, long date){
+        Order existing = orderHistory.get(ID);
+        if (existing != null) return existing;
+        orderHistory.reserve(ID);
+        Order order = new Order(ID, customer, productIDs, quantities, unitPrices,
+                total, status, date);
+        if (register(order) && status != Status.CANCELLED) order.deductStock();
+        return orderHistory.get(ID);
     }
 
     /**
@@ -126,35 +537,111 @@ public class Order {
     }
 
     /**
-     * Sets the status of an order.
-     * @param orderStatus {@code Status}
+     * Sets the status of an order. Cancelling returns the order's
+     * stock.
+     * @param orderStatus String: name of the status, in any case.
+     * @throws IllegalArgumentException if no status has that name.
+     * @throws IllegalStateException if the order's status may not
+     *                               move to it.
      */
     public void setOrderStatus(String orderStatus) {
-        try {
-            this.orderStatus = Status.valueOf(orderStatus.toUpperCase());
-        } catch (IllegalArgumentException e) {
-            throw new IllegalArgumentException("Invalid order status: "
-                    + orderStatus);
+        setOrderStatus(Status.parse(orderStatus));
+    }
+
+    /**
+     * Sets the status of an order, following {@link Status#canMoveTo}.
+     * Cancelling returns the order's stock. Setting the status the
+     * order has changes nothing.
+     * @param status {@code Status}
+     * @throws IllegalStateException if the order's status may not
+     *                               move to it.
+     */
+    public void setOrderStatus(Status status) {
+        StatusChange change = moveTo(status);
+        if (change == StatusChange.REJECTED){
+            throw new IllegalStateException("Order " + orderId + " cannot move from "
+                    + orderStatus + " to " + status);
+        }
+        if (change == StatusChange.CHANGED) Persistence.orderStatusChanged(this);
+    }
+
+    /**
+     * Moves orders to a status, each on its own, as a fulfilment run
+     * marking a day's pending orders delivered does. Orders whose
+     * status may not move to it are left as they are. The changes
+     * are saved together, waiting for the disk once.
+     * @param orders {@code List(Order)}
+     * @param status {@code Status}
+     * @return {@code StatusChange[]}: result for each order, in order.
+     */
+    public static StatusChange[] changeStatus(List<Order> orders, Status status) {
+        StatusChange[] changes = new StatusChange[orders.size()];
+        List<Order> changed = new ArrayList<>();
+        for (int i = 0; i < changes.length; i++){
+            Order order = orders.get(i);
+            changes[i] = order.moveTo(status);
+            if (changes[i] == StatusChange.CHANGED) changed.add(order);
+        }
+        Persistence.orderStatusesChanged(changed);
+        return changes;
+    }
+
+    /**
+     * Restores a status change saved by an earlier run. Any change
+     * is accepted, since a snapshot may hold an order in a later
+     * state than the change being replayed; stock follows whether
+     * the order ends up cancelled.
+     * @param status {@code Status}
+     */
+    public void restoreStatus(Status status) {
+        Status previous;
+        do {
+            previous = orderStatus;
+        } while (previous != status && !transition(previous, status));
+    }
+
+    /*
+     * Moves the order to a status if its current one allows it,
+     * retrying when another change gets in first.
+     */
+    private StatusChange moveTo(Status status) {
+        while (true){
+            Status previous = orderStatus;
+            if (previous == status) return StatusChange.UNCHANGED;
+            if (!previous.canMoveTo(status)) return StatusChange.REJECTED;
+            if (transition(previous, status)) return StatusChange.CHANGED;
+        }
+    }
+
+    /*
+     * Sets the status if it is still previous. A registered order is
+     * put in the new status's index sets before the status is set,
+     * so finders always see it in one set or the other, and taken
+     * out of the old ones after; its sales figures and stock then
+     * follow. Statuses are never entered twice, so an order put in a
+     * set for a change that lost is taken back out safely.
+     */
+    private boolean transition(Status previous, Status status) {
+        boolean registered = orderHistory.get(orderId) == this;
+        if (registered) index.add(this, status);
+        if (!STATUS.compareAndSet(this, previous, status)){
+            if (registered && orderStatus != status) index.remove(this, status);
+            return false;
+        }
+        if (registered){
+            index.remove(this, previous);
+            analytics.statusChanged(this, previous, status);
+            if (status == Status.CANCELLED) releaseStock();
+            else if (previous == Status.CANCELLED) deductStock();
         }
+        return true;
     }
 
     /**
      * Summarize and displays order.
      */
     public void orderSummary(){
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        String formattedDate = sdf.format(date);
-        System.out.printf("%-7s %d%n","OrderID:", orderId);
-        System.out.printf("%-7s %s%n", "Customer name:",customer.getName());
-        System.out.println();
-        System.out.printf("%-5s %-15s %-10s %s%n", "ID", "Product", "Qty", "Price");
-        products.forEach(p -> {
-            System.out.printf("%-5d %-15s %-10d %.2f%n", p.getProduct().getProductID(),
-                    p.getProduct().getName(), p.getQuantity(), p.getPrice());
-        });
-        System.out.println();
-        System.out.printf("%-7s %s%n", "Order Status:", orderStatus);
-        System.out.printf("%-10s %s%n", "Date:", formattedDate);
+        ReceiptWriter.forThread().write(this, ReceiptWriter.Format.TEXT, System.out);
     }
 
 }
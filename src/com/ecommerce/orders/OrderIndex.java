@@ -0,0 +1,175 @@
+package com.ecommerce.orders;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The OrderIndex class indexes order history by date, by status and
+ * by customer and status, each sorted by order date.
+ * Queries read a sub-range of one index, so their cost follows the
+ * size of the result rather than of the whole history.
+ * <p>
+ * A status change adds the order to its new status set, then changes
+ * the status, then removes it from the old set. Queries for a status
+ * keep only the orders whose current status matches, so an order is
+ * never reported under a stale status. A customer's orders of any
+ * status are read from all of the customer's status sets at once, in
+ * which an order changing status may sit in two; the walk reports it
+ * once. Results are weakly consistent: an order changing status while
+ * it is read may be left out of them.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+class OrderIndex {
+
+    /*
+     * Orders sorted by date, then by ID.
+     */
+    private static final Comparator<Order> BY_DATE =
+            Comparator.comparingLong(Order::getTime).thenComparingInt(Order::getOrderID);
+
+    private final NavigableSet<Order> byDate = new ConcurrentSkipListSet<>(BY_DATE);
+    private final Map<Order.Status, NavigableSet<Order>> byStatus = statusSets();
+    private final Map<Integer, Map<Order.Status, NavigableSet<Order>>> byCustomer =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Indexes a new order under its current status.
+     * @param order {@code Order}
+     */
+    void add(Order order){
+        byDate.add(order);
+        add(order, order.getOrderStatus());
+    }
+
+    /**
+     * Removes an order from every index.
+     * @param order {@code Order}
+     */
+    void remove(Order order){
+        for (Order.Status status : Order.Status.values()){
+            remove(order, status);
+        }
+        byDate.remove(order);
+    }
+
+    /**
+     * Adds an order to the sets of a status.
+     * @param order {@code Order}
+     * @param status {@code Status}
+     */
+    void add(Order order, Order.Status status){
+        byStatus.get(status).add(order);
+        customerSets(order.getCustomer().getCustomerID()).get(status).add(order);
+    }
+
+    /**
+     * Removes an order from the sets of a status.
+     * @param order {@code Order}
+     * @param status {@code Status}
+     */
+    void remove(Order order, Order.Status status){
+        byStatus.get(status).remove(order);
+        customerSets(order.getCustomer().getCustomerID()).get(status).remove(order);
+    }
+
+    /**
+     * Finds orders placed in a time range, sorted by date.
+     * @param customerID int: customer's ID, or {@code Order.ANY_CUSTOMER}.
+     * @param status {@code Status}, or null for any status.
+     * @param from long: start of range in epoch milliseconds, inclusive.
+     * @param to long: end of range in epoch milliseconds, exclusive.
+     * @return {@code List<Order>}: matching orders.
+     */
+    List<Order> find(int customerID, Order.Status status, long from, long to){
+        return find(customerID, status, from, to, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds a page of orders placed in a time range, sorted by date.
+     * The sets read are walked together and stop at the limit, so a
+     * page costs the same however many orders match.
+     * @param customerID int: customer's ID, or {@code Order.ANY_CUSTOMER}.
+     * @param status {@code Status}, or null for any status.
+     * @param from long: start of range in epoch milliseconds, inclusive.
+     * @param to long: end of range in epoch milliseconds, exclusive.
+     * @param after {@code Order}: last order of the previous page, or
+     *              null for the first page.
+     * @param limit int: maximum number of orders.
+     * @return {@code List<Order>}: matching orders.
+     */
+    List<Order> find(int customerID, Order.Status status, long from, long to, Order after, int limit){
+        List<Order> result = new ArrayList<>();
+        Order low = Order.probe(from);
+        Order high = Order.probe(to);
+        boolean inclusive = true;
+        if (after != null && BY_DATE.compare(after, low) >= 0){
+            low = after;
+            inclusive = false;
+        }
+        if (limit <= 0 || BY_DATE.compare(low, high) >= 0) return result;
+        List<Iterator<Order>> sources = new ArrayList<>();
+        List<Order.Status> statuses = new ArrayList<>();
+        if (customerID == Order.ANY_CUSTOMER){
+            sources.add((status == null ? byDate : byStatus.get(status))
+                    .subSet(low, inclusive, high, false).iterator());
+            statuses.add(status);
+        }
+        else {
+            Map<Order.Status, NavigableSet<Order>> sets = byCustomer.get(customerID);
+            if (sets == null) return result;
+            for (Order.Status s : Order.Status.values()){
+                if (status != null && s != status) continue;
+                sources.add(sets.get(s).subSet(low, inclusive, high, false).iterator());
+                statuses.add(status);
+            }
+        }
+        Order[] heads = new Order[sources.size()];
+        for (int i = 0; i < heads.length; i++){
+            heads[i] = next(sources.get(i), statuses.get(i));
+        }
+        while (result.size() < limit){
+            int first = -1;
+            for (int i = 0; i < heads.length; i++){
+                if (heads[i] != null && (first < 0 || BY_DATE.compare(heads[i], heads[first]) < 0)) first = i;
+            }
+            if (first < 0) break;
+            Order order = heads[first];
+            heads[first] = next(sources.get(first), statuses.get(first));
+            // An order in two sets comes out of both in turn.
+            if (result.isEmpty() || result.get(result.size() - 1) != order) result.add(order);
+        }
+        return result;
+    }
+
+    /*
+     * Next order of a status set whose current status still matches,
+     * or of the date set when status is null.
+     */
+    private static Order next(Iterator<Order> orders, Order.Status status){
+        while (orders.hasNext()){
+            Order order = orders.next();
+            if (status == null || order.getOrderStatus() == status) return order;
+        }
+        return null;
+    }
+
+    private Map<Order.Status, NavigableSet<Order>> customerSets(int customerID){
+        return byCustomer.computeIfAbsent(customerID, ID -> statusSets());
+    }
+
+    private static Map<Order.Status, NavigableSet<Order>> statusSets(){
+        Map<Order.Status, NavigableSet<Order>> sets = new EnumMap<>(Order.Status.class);
+        for (Order.Status status : Order.Status.values()){
+            sets.put(status, new ConcurrentSkipListSet<>(BY_DATE));
+        }
+        return sets;
+    }
+}
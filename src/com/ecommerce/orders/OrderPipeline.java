@@ -0,0 +1,190 @@
+package com.ecommerce.orders;
+
+import com.ecommerce.Customer;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The OrderPipeline class takes checkouts off the caller's thread.
+ * A checkout reserves its stock and joins a bounded queue, and the
+ * caller gets a future of the order. A single consumer thread drains
+ * the queue in batches: it assigns order IDs, indexes the orders,
+ * persists the whole batch with one sync, then completes the futures.
+ * If the sync fails, the batch is taken back out of order history and
+ * its stock returned before the futures fail.
+ * <p>
+ * When the queue is full, checkouts wait for room, so a slow disk
+ * slows callers down instead of letting the queue grow without bound.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class OrderPipeline implements Closeable {
+
+    /**
+     * Default number of checkouts the queue holds.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Most checkouts processed in one batch.
+     */
+    public static final int MAX_BATCH = 512;
+
+    /*
+     * How long the consumer waits for work before checking
+     * whether the pipeline has closed.
+     */
+    private static final long POLL_MILLIS = 100;
+
+    /*
+     * A checkout waiting for the consumer.
+     */
+    private record Checkout(Customer customer, Order.Lines lines, long total, long time,
+                            CompletableFuture<Order> result) {
+    }
+
+    private final BlockingQueue<Checkout> queue;
+    private final Thread consumer;
+
+    /*
+     * Checkouts share the lock while enqueueing; closing takes it
+     * exclusively, so no checkout is enqueued after the consumer
+     * has seen the pipeline closed.
+     */
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+
+    /**
+     * OrderPipeline constructor with the default capacity.
+     * Starts the consumer thread.
+     */
+    public OrderPipeline(){
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * OrderPipeline constructor. Starts the consumer thread.
+     * @param capacity int: number of checkouts the queue holds.
+     */
+    public OrderPipeline(int capacity){
+        queue = new ArrayBlockingQueue<>(capacity);
+        consumer = Thread.ofPlatform().name("order-pipeline").daemon().start(this::run);
+    }
+
+    /**
+     * Queues a checkout, waiting while the queue is full. Stock is
+     * reserved before this returns; the caller keeps the cart until
+     * the order is placed, since a failed order places nothing.
+     * @param customer {@code Customer}: the customer who ordered.
+     * @param items {@code Collection(CartItem)}: items ordered, copied.
+     * @param total long: total amount in cents.
+     * @return {@code CompletableFuture(Order)}: completes once the
+     *         order is in order history and persisted, or
+     *         exceptionally if persisting fails, with the order
+     *         withdrawn and its stock returned.
+     * @throws IllegalStateException if a product is out of stock or
+     *                               the pipeline is closed.
+     * @throws InterruptedException if interrupted while waiting; the
+     *                              stock is returned.
+     */
+    public CompletableFuture<Order> submit(Customer customer, Collection<CartItem> items, long total)
+            throws InterruptedException {
+        Order.Lines lines = Order.Lines.of(items);
+        Checkout checkout = new Checkout(customer, lines, total, System.currentTimeMillis(),
+                new CompletableFuture<>());
+        closing.readLock().lock();
+        try {
+            if (closed) throw new IllegalStateException("Order pipeline is closed");
+            Order.reserveStock(lines.productIDs(), lines.quantities());
+            try {
+                queue.put(checkout);
+            } catch (InterruptedException e) {
+                Order.releaseStock(lines.productIDs(), lines.quantities(), lines.productIDs().length);
+                throw e;
+            }
+        } finally {
+            closing.readLock().unlock();
+        }
+        return checkout.result();
+    }
+
+    /**
+     * Retrieves the number of checkouts waiting.
+     * @return int: queue length.
+     */
+    public int getQueued(){
+        return queue.size();
+    }
+
+    /**
+     * Stops taking checkouts, and waits until those already queued
+     * are processed.
+     */
+    @Override
+    public void close(){
+        closing.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        boolean interrupted = false;
+        while (consumer.isAlive()){
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void run(){
+        List<Checkout> batch = new ArrayList<>(MAX_BATCH);
+        List<Order> orders = new ArrayList<>(MAX_BATCH);
+        while (true){
+            Checkout first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null){
+                if (closed && queue.isEmpty()) return;
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, MAX_BATCH - 1);
+            process(batch, orders);
+            batch.clear();
+            orders.clear();
+        }
+    }
+
+    private static void process(List<Checkout> batch, List<Order> orders){
+        for (Checkout checkout : batch){
+            orders.add(new Order(checkout.customer(), checkout.lines(), checkout.total(),
+                    checkout.time()));
+        }
+        try {
+            Order.addBatchToHistory(orders);
+        } catch (RuntimeException e) {
+            for (Checkout checkout : batch){
+                checkout.result().completeExceptionally(e);
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++){
+            batch.get(i).result().complete(orders.get(i));
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.ecommerce.orders;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The SalesAnalytics class keeps sales figures up to date as orders
+ * are placed and change status, so dashboards read them without
+ * scanning order history: revenue in all, per product and per
+ * customer, orders per status, the best selling products and totals
+ * per minute and per hour.
+ * <p>
+ * Revenue counts every order that is not cancelled; cancelling an
+ * order takes its revenue back out. Per-ID sums live in paged arrays
+ * of longs indexed by product or customer ID, added to atomically,
+ * and the shared totals in striped adders, so concurrent checkouts
+ * never take a lock. The best sellers are kept in a small board,
+ * updated only when a product's revenue passes the lowest on it.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class SalesAnalytics {
+
+    /**
+     * Most products {@link #getTopProducts} returns.
+     */
+    public static final int TOP_PRODUCTS = 100;
+
+    /*
+     * Windows kept: a day of minutes and thirty days of hours.
+     */
+    private static final int MINUTES = 24 * 60;
+    private static final int HOURS = 30 * 24;
+    private static final long MINUTE_MILLIS = 60_000;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+
+    /**
+     * Revenue of a product.
+     * @param productID int: the product's ID.
+     * @param revenue long: revenue in cents.
+     */
+    public record ProductRevenue(int productID, long revenue) {
+    }
+
+    /**
+     * Sales in a window of time.
+     * @param start long: start of the window in epoch milliseconds.
+     * @param orders long: orders placed in it and not cancelled.
+     * @param revenue long: their revenue in cents.
+     */
+    public record Window(long start, long orders, long revenue) {
+    }
+
+    private final LongAdder revenue = new LongAdder();
+    private final LongAdder[] statusCounts = new LongAdder[Order.Status.values().length];
+    private final Sums productRevenue = new Sums();
+    private final Sums customerRevenue = new Sums();
+    private final Windows minutes = new Windows(MINUTES, MINUTE_MILLIS);
+    private final Windows hours = new Windows(HOURS, HOUR_MILLIS);
+
+    /*
+     * Best sellers, highest revenue first, replaced under the
+     * board's lock. Once full, a product joins only by passing the
+     * threshold, the revenue of the last one. A cancellation that
+     * lowers a listed product marks the board stale, to be rebuilt
+     * from the product sums when next read.
+     */
+    private final Object board = new Object();
+    private volatile ProductRevenue[] leaders = new ProductRevenue[0];
+    private volatile long threshold = Long.MIN_VALUE;
+    private volatile boolean stale;
+
+    SalesAnalytics(){
+        for (int i = 0; i < statusCounts.length; i++){
+            statusCounts[i] = new LongAdder();
+        }
+    }
+
+    /*
+     * Long sums keyed by a dense ID, in pages that never move once
+     * created. Pages are added under the lock; sums are added to
+     * with atomic instructions.
+     */
+    private static final class Sums {
+        private static final int PAGE_BITS = 12;
+        private static final int PAGE_SIZE = 1 << PAGE_BITS;
+        private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+        private volatile long[][] pages = new long[1][];
+
+        long add(int ID, long delta){
+            return (long) LONGS.getAndAdd(page(ID), ID & (PAGE_SIZE - 1), delta) + delta;
+        }
+
+        long get(int ID){
+            long[][] directory = pages;
+            int index = ID >>> PAGE_BITS;
+            if (ID < 0 || index >= directory.length || directory[index] == null) return 0;
+            return (long) LONGS.getVolatile(directory[index], ID & (PAGE_SIZE - 1));
+        }
+
+        /*
+         * Highest ID a sum may be kept for, plus one.
+         */
+        int limit(){
+            return pages.length << PAGE_BITS;
+        }
+
+        private long[] page(int ID){
+            long[][] directory = pages;
+            int index = ID >>> PAGE_BITS;
+            if (index < directory.length && directory[index] != null) return directory[index];
+            synchronized (this){
+                directory = pages;
+                if (index >= directory.length){
+                    directory = Arrays.copyOf(directory, Math.max(directory.length * 2, index + 1));
+                }
+                if (directory[index] == null){
+                    directory = directory == pages ? directory.clone() : directory;
+                    directory[index] = new long[PAGE_SIZE];
+                    pages = directory;
+                }
+                return directory[index];
+            }
+        }
+    }
+
+    /*
+     * Tumbling windows in a ring, a slot per window. A slot is
+     * claimed for a newer window by replacing its bucket; sales
+     * older than the window a slot holds are past the ring and
+     * dropped.
+     */
+    private static final class Windows {
+        private final AtomicReferenceArray<Bucket> slots;
+        private final long length;
+
+        Windows(int count, long length){
+            this.slots = new AtomicReferenceArray<>(count);
+            this.length = length;
+        }
+
+        void add(long time, long orders, long revenue){
+            long window = Math.floorDiv(time, length);
+            int slot = (int) Math.floorMod(window, (long) slots.length());
+            while (true){
+                Bucket bucket = slots.get(slot);
+                if (bucket != null && bucket.window == window){
+                    bucket.orders.add(orders);
+                    bucket.revenue.add(revenue);
+                    return;
+                }
+                if (bucket != null && bucket.window > window) return;
+                slots.compareAndSet(slot, bucket, new Bucket(window));
+            }
+        }
+
+        List<Window> last(long now, int count){
+            long window = Math.floorDiv(now, length);
+            count = Math.min(count, slots.length());
+            List<Window> windows = new ArrayList<>(count);
+            for (long w = window - count + 1; w <= window; w++){
+                Bucket bucket = slots.get((int) Math.floorMod(w, (long) slots.length()));
+                boolean held = bucket != null && bucket.window == w;
+                windows.add(new Window(w * length, held ? bucket.orders.sum() : 0,
+                        held ? bucket.revenue.sum() : 0));
+            }
+            return windows;
+        }
+    }
+
+    private static final class Bucket {
+        final long window;
+        final LongAdder orders = new LongAdder();
+        final LongAdder revenue = new LongAdder();
+
+        Bucket(long window){
+            this.window = window;
+        }
+    }
+
+    /**
+     * Counts a newly registered order under its status.
+     * @param order {@code Order}
+     */
+    void orderAdded(Order order){
+        Order.Status status = order.getOrderStatus();
+        statusCounts[status.ordinal()].increment();
+        if (status != Order.Status.CANCELLED) addRevenue(order, 1);
+    }
+
+    /**
+     * Takes an order that was withdrawn from order history back
+     * out of the figures.
+     * @param order {@code Order}
+     */
+    void orderRemoved(Order order){
+        Order.Status status = order.getOrderStatus();
+        statusCounts[status.ordinal()].decrement();
+        if (status != Order.Status.CANCELLED) addRevenue(order, -1);
+    }
+
+    /**
+     * Moves an order between status counts, taking its revenue out
+     * when it is cancelled and back when it leaves CANCELLED.
+     * @param order {@code Order}
+     * @param previous {@code Status}: status it had.
+     * @param status {@code Status}: status it has now.
+     */
+    void statusChanged(Order order, Order.Status previous, Order.Status status){
+        statusCounts[status.ordinal()].increment();
+        statusCounts[previous.ordinal()].decrement();
+        if (status == Order.Status.CANCELLED) addRevenue(order, -1);
+        else if (previous == Order.Status.CANCELLED) addRevenue(order, 1);
+    }
+
+    private void addRevenue(Order order, int sign){
+        long total = sign * order.getTotal();
+        revenue.add(total);
+        customerRevenue.add(order.getCustomer().getCustomerID(), total);
+        minutes.add(order.getTime(), sign, total);
+        hours.add(order.getTime(), sign, total);
+        for (int line = 0; line < order.getLineCount(); line++){
+            int productID = order.getProductID(line);
+            long delta = sign * order.getLinePrice(line);
+            long sum = productRevenue.add(productID, delta);
+            if (delta > 0 && sum > threshold) rank(productID);
+            else if (delta < 0 && isLeader(productID)) markStale();
+        }
+    }
+
+    /*
+     * Puts a product on the board at its current revenue, dropping
+     * the lowest if the board is full.
+     */
+    private void rank(int productID){
+        synchronized (board){
+            if (stale) return;
+            long sum = productRevenue.get(productID);
+            ProductRevenue[] current = leaders;
+            List<ProductRevenue> next = new ArrayList<>(current.length + 1);
+            for (ProductRevenue leader : current){
+                if (leader.productID() != productID) next.add(leader);
+            }
+            next.add(new ProductRevenue(productID, sum));
+            publish(next);
+        }
+    }
+
+    private boolean isLeader(int productID){
+        for (ProductRevenue leader : leaders){
+            if (leader.productID() == productID) return true;
+        }
+        return false;
+    }
+
+    private void markStale(){
+        synchronized (board){
+            stale = true;
+            threshold = Long.MIN_VALUE;
+        }
+    }
+
+    /*
+     * Sorts candidates by revenue and publishes the best of them.
+     * Called holding the board's lock.
+     */
+    private void publish(List<ProductRevenue> candidates){
+        candidates.sort(Comparator.comparingLong(ProductRevenue::revenue).reversed()
+                .thenComparingInt(ProductRevenue::productID));
+        ProductRevenue[] top = candidates.subList(0, Math.min(candidates.size(), TOP_PRODUCTS))
+                .toArray(ProductRevenue[]::new);
+        leaders = top;
+        threshold = top.length < TOP_PRODUCTS ? Long.MIN_VALUE : top[top.length - 1].revenue();
+    }
+
+    /**
+     * Retrieves revenue from orders not cancelled.
+     * @return long: revenue in cents.
+     */
+    public long getRevenue(){
+        return revenue.sum();
+    }
+
+    /**
+     * Retrieves the revenue of a product.
+     * @param productID int: the product's ID.
+     * @return long: revenue in cents.
+     */
+    public long getProductRevenue(int productID){
+        return productRevenue.get(productID);
+    }
+
+    /**
+     * Retrieves the revenue from a customer.
+     * @param customerID int: the customer's ID.
+     * @return long: revenue in cents.
+     */
+    public long getCustomerRevenue(int customerID){
+        return customerRevenue.get(customerID);
+    }
+
+    /**
+     * Retrieves the number of orders with a status.
+     * @param status {@code Status}
+     * @return long: order count.
+     */
+    public long getOrderCount(Order.Status status){
+        return statusCounts[status.ordinal()].sum();
+    }
+
+    /**
+     * Retrieves the products with the highest revenue. After a
+     * cancellation lowered one of them, the first call rebuilds the
+     * list from every product's revenue.
+     * @param limit int: most products, at most {@link #TOP_PRODUCTS}.
+     * @return {@code List(ProductRevenue)}: highest revenue first.
+     */
+    public List<ProductRevenue> getTopProducts(int limit){
+        if (stale){
+            synchronized (board){
+                if (stale){
+                    List<ProductRevenue> all = new ArrayList<>();
+                    for (int ID = 1; ID < productRevenue.limit(); ID++){
+                        long sum = productRevenue.get(ID);
+                        if (sum > 0) all.add(new ProductRevenue(ID, sum));
+                    }
+                    publish(all);
+                    stale = false;
+                }
+            }
+        }
+        ProductRevenue[] top = leaders;
+        return List.of(top).subList(0, Math.max(0, Math.min(limit, top.length)));
+    }
+
+    /**
+     * Retrieves sales per minute, up to a day back.
+     * @param now long: time in the last minute, in epoch milliseconds.
+     * @param count int: number of minutes.
+     * @return {@code List(Window)}: oldest first, ending with the
+     *         minute holding now.
+     */
+    public List<Window> getMinutes(long now, int count){
+        return minutes.last(now, count);
+    }
+
+    /**
+     * Retrieves sales per hour, up to thirty days back.
+     * @param now long: time in the last hour, in epoch milliseconds.
+     * @param count int: number of hours.
+     * @return {@code List(Window)}: oldest first, ending with the
+     *         hour holding now.
+     */
+    public List<Window> getHours(long now, int count){
+        return hours.last(now, count);
+    }
+}
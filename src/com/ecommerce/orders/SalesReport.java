@@ -0,0 +1,344 @@
+package com.ecommerce.orders;
+
+import com.ecommerce.Money;
+import com.ecommerce.Product;
+import com.ecommerce.render.Dates;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The SalesReport class builds the end-of-day report over the whole
+ * order history: orders, revenue and units sold per day with the
+ * average basket, and units and revenue per product. Cancelled
+ * orders are counted per day but add no revenue or units.
+ * <p>
+ * The history is split into ranges of order IDs that fork/join tasks
+ * total in parallel, each into its own arrays of longs indexed by day
+ * and a table of longs keyed by product ID; the totals of two ranges
+ * are merged by adding them up, so workers share nothing while they
+ * run. The report is
+ * then streamed to a file as CSV, a line at a time.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class SalesReport {
+
+    /*
+     * Orders one task totals without splitting further.
+     */
+    private static final int CHUNK = 16 * 1024;
+
+    private final Totals totals;
+
+    private SalesReport(Totals totals){
+        this.totals = totals;
+    }
+
+    /*
+     * Running totals of a range of orders. Days are counted in the
+     * system time zone from firstDay, the epoch day of index 0.
+     */
+    private static final class Totals {
+        private static final ZoneId ZONE = ZoneId.systemDefault();
+
+        long firstDay;
+        long[] dayOrders = new long[0];
+        long[] dayCancelled = new long[0];
+        long[] dayRevenue = new long[0];
+        long[] dayUnits = new long[0];
+        final ProductTotals products = new ProductTotals();
+
+        /*
+         * Day of the last order added and the epoch milliseconds it
+         * spans, since orders next to each other by ID were mostly
+         * placed on the same day.
+         */
+        private long cachedDay;
+        private long cachedFrom = Long.MAX_VALUE;
+        private long cachedTo = Long.MIN_VALUE;
+
+        void add(Order order){
+            int day = dayIndex(day(order.getTime()));
+            dayOrders[day]++;
+            if (order.getOrderStatus() == Order.Status.CANCELLED){
+                dayCancelled[day]++;
+                return;
+            }
+            dayRevenue[day] += order.getTotal();
+            for (int line = 0; line < order.getLineCount(); line++){
+                products.add(order.getProductID(line), order.getQuantity(line), order.getLinePrice(line));
+                dayUnits[day] += order.getQuantity(line);
+            }
+        }
+
+        Totals merge(Totals other){
+            if (other.dayOrders.length > 0){
+                dayIndex(other.firstDay);
+                dayIndex(other.firstDay + other.dayOrders.length - 1);
+                int offset = (int) (other.firstDay - firstDay);
+                for (int i = 0; i < other.dayOrders.length; i++){
+                    dayOrders[offset + i] += other.dayOrders[i];
+                    dayCancelled[offset + i] += other.dayCancelled[i];
+                    dayRevenue[offset + i] += other.dayRevenue[i];
+                    dayUnits[offset + i] += other.dayUnits[i];
+                }
+            }
+            products.addAll(other.products);
+            return this;
+        }
+
+        private long day(long time){
+            if (time >= cachedFrom && time < cachedTo) return cachedDay;
+            LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(time), ZONE);
+            cachedDay = date.toEpochDay();
+            cachedFrom = date.atStartOfDay(ZONE).toInstant().toEpochMilli();
+            cachedTo = date.plusDays(1).atStartOfDay(ZONE).toInstant().toEpochMilli();
+            return cachedDay;
+        }
+
+        /*
+         * Index of a day, growing the day arrays at either end
+         * to hold it.
+         */
+        private int dayIndex(long day){
+            if (dayOrders.length == 0) firstDay = day;
+            long index = day - firstDay;
+            if (index >= 0 && index < dayOrders.length) return (int) index;
+            long from = Math.min(firstDay, day);
+            long to = Math.max(firstDay + dayOrders.length, day + 1);
+            int shift = (int) (firstDay - from);
+            dayOrders = shifted(dayOrders, shift, to - from);
+            dayCancelled = shifted(dayCancelled, shift, to - from);
+            dayRevenue = shifted(dayRevenue, shift, to - from);
+            dayUnits = shifted(dayUnits, shift, to - from);
+            firstDay = from;
+            return (int) (day - from);
+        }
+
+        private static long[] shifted(long[] values, int shift, long length){
+            long[] copy = new long[Math.toIntExact(length)];
+            System.arraycopy(values, 0, copy, shift, values.length);
+            return copy;
+        }
+    }
+
+    /*
+     * Units and revenue keyed by product ID in an open-addressing
+     * table, so a range holds only the products it sold however
+     * large the catalog. Slots with ID 0 are empty.
+     */
+    private static final class ProductTotals {
+        int[] IDs = new int[64];
+        long[] units = new long[64];
+        long[] revenue = new long[64];
+        int size;
+
+        void add(int ID, long unitCount, long amount){
+            int slot = slot(ID);
+            if (IDs[slot] == 0){
+                IDs[slot] = ID;
+                size++;
+            }
+            units[slot] += unitCount;
+            revenue[slot] += amount;
+            if (size * 2 > IDs.length) resize();
+        }
+
+        void addAll(ProductTotals other){
+            for (int slot = 0; slot < other.IDs.length; slot++){
+                if (other.IDs[slot] != 0) add(other.IDs[slot], other.units[slot], other.revenue[slot]);
+            }
+        }
+
+        /*
+         * Slot holding an ID, or the empty slot it would go in.
+         */
+        int slot(int ID){
+            int mask = IDs.length - 1;
+            int slot = (ID * 0x9E3779B9 >>> 16) & mask;
+            while (IDs[slot] != ID && IDs[slot] != 0){
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /*
+         * Slots in use, in ascending ID order.
+         */
+        int[] sortedSlots(){
+            long[] keyed = new long[size];
+            int n = 0;
+            for (int slot = 0; slot < IDs.length; slot++){
+                if (IDs[slot] != 0) keyed[n++] = (long) IDs[slot] << 32 | slot;
+            }
+            Arrays.sort(keyed);
+            int[] slots = new int[n];
+            for (int i = 0; i < n; i++){
+                slots[i] = (int) keyed[i];
+            }
+            return slots;
+        }
+
+        private void resize(){
+            int[] oldIDs = IDs;
+            long[] oldUnits = units;
+            long[] oldRevenue = revenue;
+            IDs = new int[oldIDs.length * 2];
+            units = new long[IDs.length];
+            revenue = new long[IDs.length];
+            for (int i = 0; i < oldIDs.length; i++){
+                if (oldIDs[i] == 0) continue;
+                int slot = slot(oldIDs[i]);
+                IDs[slot] = oldIDs[i];
+                units[slot] = oldUnits[i];
+                revenue[slot] = oldRevenue[i];
+            }
+        }
+    }
+
+    /*
+     * Totals the orders with IDs in [from, to), splitting the range
+     * in two until it is one chunk.
+     */
+    private static final class Task extends RecursiveTask<Totals> {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+
+        Task(int from, int to){
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Totals compute(){
+            if (to - from <= CHUNK){
+                Totals totals = new Totals();
+                for (int ID = from; ID < to; ID++){
+                    Order order = Order.getOrder(ID);
+                    if (order != null) totals.add(order);
+                }
+                return totals;
+            }
+            int middle = (from + to) >>> 1;
+            Task right = new Task(middle, to);
+            right.fork();
+            Totals left = new Task(from, middle).compute();
+            return left.merge(right.join());
+        }
+    }
+
+    /**
+     * Builds the report over the order history on the common pool.
+     * @return {@code SalesReport}
+     */
+    public static SalesReport generate(){
+        return generate(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds the report over the order history.
+     * @param pool {@code ForkJoinPool}: pool the ranges are totalled on.
+     * @return {@code SalesReport}
+     */
+    public static SalesReport generate(ForkJoinPool pool){
+        return new SalesReport(pool.invoke(new Task(1, Order.lastOrderID() + 1)));
+    }
+
+    /**
+     * Retrieves the number of orders reported, cancelled or not.
+     * @return long: orders.
+     */
+    public long getOrders(){
+        return Arrays.stream(totals.dayOrders).sum();
+    }
+
+    /**
+     * Retrieves the revenue from orders not cancelled.
+     * @return long: revenue in cents.
+     */
+    public long getRevenue(){
+        return Arrays.stream(totals.dayRevenue).sum();
+    }
+
+    /**
+     * Retrieves the units of a product sold in orders not cancelled.
+     * @param productID int: the product's ID.
+     * @return long: units.
+     */
+    public long getUnits(int productID){
+        if (productID <= 0) return 0;
+        int slot = totals.products.slot(productID);
+        return totals.products.IDs[slot] == productID ? totals.products.units[slot] : 0;
+    }
+
+    /**
+     * Writes the report to a file as CSV: a section of days, a blank
+     * line, then a section of products sold.
+     * @param file {@code Path}: the file, replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)){
+            write(out);
+        }
+    }
+
+    /**
+     * Writes the report as CSV.
+     * @param out {@code Writer}: destination, not closed.
+     * @throws IOException if writing fails.
+     */
+    public void write(Writer out) throws IOException {
+        StringBuilder line = new StringBuilder(128);
+        out.write("day,orders,cancelled,revenue,units,average_units,average_order\n");
+        for (int i = 0; i < totals.dayOrders.length; i++){
+            if (totals.dayOrders[i] == 0) continue;
+            long placed = totals.dayOrders[i] - totals.dayCancelled[i];
+            line.setLength(0);
+            Dates.appendTo(line, Dates.DATE, LocalDate.ofEpochDay(totals.firstDay + i)
+                    .atStartOfDay(Totals.ZONE).toInstant().toEpochMilli());
+            line.append(',').append(totals.dayOrders[i]).append(',').append(totals.dayCancelled[i]).append(',');
+            Money.appendTo(line, totals.dayRevenue[i]).append(',').append(totals.dayUnits[i]).append(',');
+            if (placed > 0){
+                line.append(String.format(Locale.ROOT, "%.2f", (double) totals.dayUnits[i] / placed)).append(',');
+                Money.appendTo(line, totals.dayRevenue[i] / placed);
+            }
+            else {
+                line.append(',');
+            }
+            out.append(line).append('\n');
+        }
+        out.write("\nproduct_id,product,units,revenue\n");
+        ProductTotals products = totals.products;
+        for (int slot : products.sortedSlots()){
+            Product product = Product.getProduct(products.IDs[slot]);
+            line.setLength(0);
+            line.append(products.IDs[slot]).append(',');
+            if (product != null) quote(line, product.getName());
+            line.append(',').append(products.units[slot]).append(',');
+            Money.appendTo(line, products.revenue[slot]);
+            out.append(line).append('\n');
+        }
+    }
+
+    private static void quote(StringBuilder sb, String value){
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0){
+            sb.append(value);
+            return;
+        }
+        sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
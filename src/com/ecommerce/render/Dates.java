@@ -0,0 +1,44 @@
+package com.ecommerce.render;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * The Dates class holds the date formatters used when rendering.
+ * {@code DateTimeFormatter} is immutable and thread-safe, so each
+ * pattern is built once and shared, where {@code SimpleDateFormat}
+ * had to be created again for every call. Dates are shown in the
+ * system time zone.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class Dates {
+
+    /**
+     * Formats a day, e.g. {@code 2024-03-01}.
+     */
+    public static final DateTimeFormatter DATE =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneId.systemDefault());
+
+    /**
+     * Formats a time of day to the second, e.g. {@code 2024-03-01 14:05:09}.
+     */
+    public static final DateTimeFormatter DATE_TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private Dates(){
+    }
+
+    /**
+     * Appends a time formatted with a formatter.
+     * @param sb {@code StringBuilder} to append to.
+     * @param formatter {@code DateTimeFormatter}: e.g. {@link #DATE}.
+     * @param epochMillis long: time in epoch milliseconds.
+     * @return {@code StringBuilder} sb.
+     */
+    public static StringBuilder appendTo(StringBuilder sb, DateTimeFormatter formatter, long epochMillis){
+        formatter.formatTo(Instant.ofEpochMilli(epochMillis), sb);
+        return sb;
+    }
+}
@@ -0,0 +1,193 @@
+package com.ecommerce.render;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The Json class writes JSON values into a {@code StringBuilder} and
+ * reads the flat request objects the storefront API accepts.
+ * It is deliberately small: only objects of string, number, boolean
+ * and null members are parsed, which is all the API takes as input.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class Json {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Json(){
+    }
+
+    /**
+     * Appends a string as a quoted, escaped JSON string.
+     * @param sb {@code StringBuilder} to append to.
+     * @param value String: value, null writes {@code null}.
+     * @return {@code StringBuilder} sb.
+     */
+    public static StringBuilder string(StringBuilder sb, CharSequence value){
+        if (value == null) return sb.append("null");
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            switch (c){
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20){
+                        sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    }
+                    else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"');
+    }
+
+    /**
+     * Appends an object member name and colon, preceded by a comma
+     * unless it is the first member.
+     * @param sb {@code StringBuilder} to append to.
+     * @param name String: member name.
+     * @return {@code StringBuilder} sb.
+     */
+    public static StringBuilder name(StringBuilder sb, String name){
+        char last = sb.isEmpty() ? '{' : sb.charAt(sb.length() - 1);
+        if (last != '{' && last != '[') sb.append(',');
+        return string(sb, name).append(':');
+    }
+
+    /**
+     * Appends a comma unless the value is the first array element.
+     * @param sb {@code StringBuilder} to append to.
+     * @return {@code StringBuilder} sb.
+     */
+    public static StringBuilder element(StringBuilder sb){
+        char last = sb.isEmpty() ? '[' : sb.charAt(sb.length() - 1);
+        if (last != '[' && last != '{') sb.append(',');
+        return sb;
+    }
+
+    /**
+     * Parses a flat JSON object.
+     * @param text String: JSON text, blank reads as an empty object.
+     * @return {@code Map<String, String>}: members as text; strings
+     *         unescaped, null members omitted.
+     * @throws IllegalArgumentException if the text is not a flat
+     *                                  JSON object.
+     */
+    public static Map<String, String> parseObject(String text){
+        Map<String, String> members = new HashMap<>();
+        if (text == null || text.isBlank()) return members;
+        Parser parser = new Parser(text);
+        parser.expect('{');
+        if (!parser.consume('}')){
+            do {
+                String name = parser.string();
+                parser.expect(':');
+                String value = parser.value();
+                if (value != null) members.put(name, value);
+            } while (parser.consume(','));
+            parser.expect('}');
+        }
+        parser.end();
+        return members;
+    }
+
+    /*
+     * Cursor over JSON text.
+     */
+    private static final class Parser {
+        private final String text;
+        private int position;
+
+        Parser(String text){
+            this.text = text;
+        }
+
+        void expect(char c){
+            if (!consume(c)) throw error("expected '" + c + "'");
+        }
+
+        boolean consume(char c){
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == c){
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        void end(){
+            skipWhitespace();
+            if (position != text.length()) throw error("unexpected trailing content");
+        }
+
+        String value(){
+            skipWhitespace();
+            if (position >= text.length()) throw error("missing value");
+            char c = text.charAt(position);
+            if (c == '"') return string();
+            int start = position;
+            while (position < text.length() && ",} \t\r\n".indexOf(text.charAt(position)) < 0){
+                position++;
+            }
+            String literal = text.substring(start, position);
+            if (literal.equals("null")) return null;
+            if (literal.equals("true") || literal.equals("false")
+                    || literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")){
+                return literal;
+            }
+            throw error("invalid value");
+        }
+
+        String string(){
+            skipWhitespace();
+            if (position >= text.length() || text.charAt(position) != '"') throw error("expected string");
+            StringBuilder sb = new StringBuilder();
+            position++;
+            while (position < text.length()){
+                char c = text.charAt(position++);
+                if (c == '"') return sb.toString();
+                if (c != '\\'){
+                    sb.append(c);
+                    continue;
+                }
+                if (position >= text.length()) break;
+                char escaped = text.charAt(position++);
+                switch (escaped){
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) throw error("invalid escape");
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e){
+                            throw error("invalid escape");
+                        }
+                        position += 4;
+                    }
+                    default -> sb.append(escaped);
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        private void skipWhitespace(){
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))){
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message){
+            return new IllegalArgumentException("Invalid JSON at " + position + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.ecommerce.render;
+
+import com.ecommerce.Money;
+import com.ecommerce.orders.Order;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The ReceiptWriter class renders order receipts as plain text or
+ * JSON. A receipt is built in a buffer the writer keeps between calls
+ * and handed to the output in a single write, instead of one
+ * {@code printf} per line.
+ * <p>
+ * A writer is not thread-safe; {@link #forThread()} returns one
+ * owned by the calling thread.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class ReceiptWriter {
+
+    /**
+     * Receipt formats.
+     */
+    public enum Format {TEXT, JSON}
+
+    private static final ThreadLocal<ReceiptWriter> writers =
+            ThreadLocal.withInitial(ReceiptWriter::new);
+
+    /*
+     * Capacity the buffers shrink back to after an unusually
+     * large receipt.
+     */
+    private static final int BUFFER_SIZE = 1024;
+
+    private StringBuilder buffer = new StringBuilder(BUFFER_SIZE);
+    private ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+    /**
+     * Retrieves the calling thread's writer.
+     * @return {@code ReceiptWriter}
+     */
+    public static ReceiptWriter forThread(){
+        return writers.get();
+    }
+
+    /**
+     * Writes an order's receipt to an output in one call.
+     * @param order {@code Order}
+     * @param format {@code Format}
+     * @param out {@code Appendable}: destination.
+     */
+    public void write(Order order, Format format, Appendable out){
+        try {
+            out.append(render(order, format));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            reset();
+        }
+    }
+
+    /**
+     * Writes an order's receipt to a channel as UTF-8.
+     * @param order {@code Order}
+     * @param format {@code Format}
+     * @param channel {@code WritableByteChannel}: destination.
+     * @throws IOException if the write fails.
+     */
+    public void write(Order order, Format format, WritableByteChannel channel) throws IOException {
+        try {
+            CharBuffer chars = CharBuffer.wrap(render(order, format));
+            encoder.reset();
+            bytes.clear();
+            if (bytes.capacity() < chars.length() * 3){
+                bytes = ByteBuffer.allocate(chars.length() * 3);
+            }
+            CoderResult result = encoder.encode(chars, bytes, true);
+            if (result.isError()) result.throwException();
+            encoder.flush(bytes);
+            bytes.flip();
+            while (bytes.hasRemaining()){
+                channel.write(bytes);
+            }
+        } finally {
+            reset();
+            if (bytes.capacity() > BUFFER_SIZE * 16) bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Appends an order's receipt as text: header, one row per line,
+     * status and date.
+     * @param sb {@code StringBuilder} to append to.
+     * @param order {@code Order}
+     * @return {@code StringBuilder} sb.
+     */
+    public static StringBuilder appendText(StringBuilder sb, Order order){
+        String newLine = System.lineSeparator();
+        cell(sb, "OrderID:", 7).append(order.getOrderID()).append(newLine);
+        cell(sb, "Customer name:", 7).append(order.getCustomer().getName()).append(newLine);
+        sb.append(newLine);
+        cell(cell(cell(sb, "ID", 5), "Product", 15), "Qty", 10).append("Price").append(newLine);
+        for (int line = 0; line < order.getLineCount(); line++){
+            cell(cell(cell(sb, order.getProductID(line), 5), order.getProductName(line), 15),
+                    order.getQuantity(line), 10);
+            Money.appendTo(sb, order.getLinePrice(line)).append(newLine);
+        }
+        sb.append(newLine);
+        cell(sb, "Order Status:", 7).append(order.getOrderStatus().name()).append(newLine);
+        cell(sb, "Date:", 10);
+        return Dates.appendTo(sb, Dates.DATE, order.getTime()).append(newLine);
+    }
+
+    /**
+     * Appends an order's receipt as a JSON object.
+     * @param sb {@code StringBuilder} to append to.
+     * @param order {@code Order}
+     * @return {@code StringBuilder} sb.
+     */
+    public static StringBuilder appendJson(StringBuilder sb, Order order){
+        sb.append('{');
+        Json.name(sb, "orderID").append(order.getOrderID());
+        Json.name(sb, "customerID").append(order.getCustomer().getCustomerID());
+        Json.string(Json.name(sb, "status"), order.getOrderStatus().name());
+        Json.name(sb, "totalCents").append(order.getTotal());
+        Json.name(sb, "date").append(order.getTime());
+        Json.name(sb, "lines").append('[');
+        for (int line = 0; line < order.getLineCount(); line++){
+            Json.element(sb).append('{');
+            Json.name(sb, "productID").append(order.getProductID(line));
+            Json.string(Json.name(sb, "name"), order.getProductName(line));
+            Json.name(sb, "quantity").append(order.getQuantity(line));
+            Json.name(sb, "unitPriceCents").append(order.getUnitPrice(line));
+            sb.append('}');
+        }
+        return sb.append("]}");
+    }
+
+    private StringBuilder render(Order order, Format format){
+        return format == Format.JSON ? appendJson(buffer, order) : appendText(buffer, order);
+    }
+
+    private void reset(){
+        if (buffer.capacity() > BUFFER_SIZE * 16) buffer = new StringBuilder(BUFFER_SIZE);
+        else buffer.setLength(0);
+    }
+
+    /*
+     * Appends a cell padded to a width plus one space,
+     * like printf("%-Ns ").
+     */
+    private static StringBuilder cell(StringBuilder sb, CharSequence value, int width){
+        int start = sb.length();
+        sb.append(value);
+        return pad(sb, start, width);
+    }
+
+    private static StringBuilder cell(StringBuilder sb, long value, int width){
+        int start = sb.length();
+        sb.append(value);
+        return pad(sb, start, width);
+    }
+
+    private static StringBuilder pad(StringBuilder sb, int start, int width){
+        for (int n = sb.length() - start; n < width; n++){
+            sb.append(' ');
+        }
+        return sb.append(' ');
+    }
+}
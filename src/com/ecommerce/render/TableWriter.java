@@ -0,0 +1,192 @@
+package com.ecommerce.render;
+
+import com.ecommerce.Money;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The TableWriter class renders rows of left-aligned, space-padded
+ * columns, like {@code printf("%-15s ...")}, into a reused
+ * {@code StringBuilder}.
+ * Rows are handed to the output in blocks once the buffer passes a
+ * threshold, so memory stays constant and the first rows appear
+ * without waiting for the whole table, however long it is.
+ * Numbers and amounts are appended without intermediate strings.
+ *
+ * @author Deni Wisdom Ochiche
+ */
+public final class TableWriter implements Flushable {
+
+    /*
+     * Buffered characters that trigger a write to the output.
+     */
+    private static final int DEFAULT_THRESHOLD = 8 * 1024;
+
+    private final Appendable out;
+    private final int threshold;
+    private final StringBuilder buffer;
+
+    /*
+     * Buffer position where the current cell starts.
+     */
+    private int cellStart;
+
+    /**
+     * TableWriter constructor.
+     * @param out {@code Appendable}: destination of rendered rows.
+     */
+    public TableWriter(Appendable out){
+        this(out, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * TableWriter constructor.
+     * @param out {@code Appendable}: destination of rendered rows.
+     * @param threshold int: buffered characters that trigger a write.
+     */
+    public TableWriter(Appendable out, int threshold){
+        this.out = out;
+        this.threshold = threshold;
+        this.buffer = new StringBuilder(threshold + 256);
+    }
+
+    /**
+     * Appends a text cell padded to a width.
+     * @param value {@code CharSequence}: cell text.
+     * @param width int: minimum width.
+     * @return {@code TableWriter} this.
+     */
+    public TableWriter cell(CharSequence value, int width){
+        buffer.append(value);
+        return pad(width);
+    }
+
+    /**
+     * Appends a number cell padded to a width.
+     * @param value long: cell value.
+     * @param width int: minimum width.
+     * @return {@code TableWriter} this.
+     */
+    public TableWriter cell(long value, int width){
+        buffer.append(value);
+        return pad(width);
+    }
+
+    /**
+     * Appends an amount of money cell, e.g. {@code $12.05}, padded
+     * to a width.
+     * @param cents long: amount in cents.
+     * @param width int: minimum width.
+     * @return {@code TableWriter} this.
+     */
+    public TableWriter money(long cents, int width){
+        Money.appendTo(buffer.append('$'), cents);
+        return pad(width);
+    }
+
+    /**
+     * Appends to the current cell without ending it, for cells built
+     * from several parts.
+     * @param value {@code CharSequence}: text to append.
+     * @return {@code TableWriter} this.
+     */
+    public TableWriter text(CharSequence value){
+        buffer.append(value);
+        return this;
+    }
+
+    /**
+     * Appends a number to the current cell without ending it.
+     * @param value long: number to append.
+     * @return {@code TableWriter} this.
+     */
+    public TableWriter text(long value){
+        buffer.append(value);
+        return this;
+    }
+
+    /**
+     * Appends an amount of money, e.g. {@code 12.05}, to the current
+     * cell without ending it.
+     * @param cents long: amount in cents.
+     * @return {@code TableWriter} this.
+     */
+    public TableWriter amount(long cents){
+        Money.appendTo(buffer, cents);
+        return this;
+    }
+
+    /**
+     * Appends a date and time, e.g. {@code 2024-03-01 14:05:09}, to
+     * the current cell without ending it.
+     * @param epochMillis long: time in epoch milliseconds.
+     * @return {@code TableWriter} this.
+     */
+    public TableWriter date(long epochMillis){
+        Dates.appendTo(buffer, Dates.DATE_TIME, epochMillis);
+        return this;
+    }
+
+    /**
+     * Ends the current cell, padding it to a width.
+     * @param width int: minimum width.
+     * @return {@code TableWriter} this.
+     */
+    public TableWriter pad(int width){
+        for (int n = buffer.length() - cellStart; n < width; n++){
+            buffer.append(' ');
+        }
+        buffer.append(' ');
+        cellStart = buffer.length();
+        return this;
+    }
+
+    /**
+     * Appends the last cell of a row, unpadded, and ends the row.
+     * @param value {@code Object}: cell value.
+     * @return {@code TableWriter} this.
+     */
+    public TableWriter end(Object value){
+        buffer.append(value);
+        return end();
+    }
+
+    /**
+     * Ends the current row, writing buffered rows out if the buffer
+     * has passed the threshold.
+     * @return {@code TableWriter} this.
+     */
+    public TableWriter end(){
+        buffer.append(System.lineSeparator());
+        cellStart = buffer.length();
+        if (buffer.length() >= threshold) write();
+        return this;
+    }
+
+    /**
+     * Writes buffered rows to the output and flushes it.
+     */
+    @Override
+    public void flush(){
+        write();
+        if (out instanceof Flushable flushable){
+            try {
+                flushable.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void write(){
+        try {
+            out.append(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.setLength(0);
+        cellStart = 0;
+    }
+}